@@ -0,0 +1,106 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DatagenTask#poll()} end to end for every quickstart. The {@code records}
+ * counter is the number of records generated per second, so its inverse is the time per record.
+ * Run with {@code -prof gc} for the bytes allocated per poll, which divided by {@code batchSize}
+ * gives the bytes allocated per record. JMH's own {@code -t} option runs several tasks at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DatagenTaskBenchmark {
+
+  @Param({"clickstream_codes", "clickstream", "clickstream_users", "orders", "ratings", "users",
+          "users_", "pageviews", "stock_trades"})
+  public String quickstart;
+
+  @Param({"1", "100", "1000"})
+  public int batchSize;
+
+  @Param({"1", "4"})
+  public int generatorThreads;
+
+  @Param({DatagenConnectorConfig.GENERATOR_ENGINE_AVRO,
+          DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE})
+  public String engine;
+
+  private DatagenTask task;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long records;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      records = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Map<String, String> props = new HashMap<>();
+    props.put(DatagenConnectorConfig.KAFKA_TOPIC_CONF, "benchmark");
+    props.put(DatagenConnectorConfig.QUICKSTART_CONF, quickstart);
+    props.put(DatagenConnectorConfig.MAXINTERVAL_CONF, "0");
+    props.put(DatagenConnectorConfig.BATCH_SIZE_CONF, Integer.toString(batchSize));
+    props.put(DatagenConnectorConfig.GENERATOR_THREADS_CONF, Integer.toString(generatorThreads));
+    props.put(DatagenConnectorConfig.GENERATOR_ENGINE_CONF, engine);
+    props.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    task = new DatagenTask();
+    task.start(props);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    task.stop();
+  }
+
+  @Benchmark
+  public List<SourceRecord> poll(Counters counters) throws InterruptedException {
+    List<SourceRecord> records = task.poll();
+    counters.records += records.size();
+    return records;
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.confluent.avro.random.generator.Generator;
+import io.confluent.connect.avro.AvroData;
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the phases of generating one record separately: generating the Avro record,
+ * converting it to Connect data and extracting the key, along with the native engine and the
+ * plain {@link AvroData} conversion the compiled conversion plan replaces. The native engine
+ * benchmark fails its setup for quickstarts the engine does not support.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GenerationPhaseBenchmark {
+
+  // Converting a pool of records rather than a single one keeps the branches realistic
+  private static final int POOL_SIZE = 1024;
+
+  @Param({"clickstream_codes", "clickstream", "clickstream_users", "orders", "ratings", "users",
+          "users_", "pageviews", "stock_trades"})
+  public String quickstart;
+
+  private Schema avroSchema;
+  private Generator generator;
+  private AvroData avroData;
+  private ConversionPlan conversionPlan;
+  private ConversionPlan.ValueConverter keyReader;
+  private Object[] pool;
+  private int next;
+
+  @State(Scope.Thread)
+  public static class NativeEngine {
+    private NativeGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp(GenerationPhaseBenchmark benchmark) {
+      generator = new NativeGenerator(
+          benchmark.avroSchema, benchmark.conversionPlan.schema(), new Random(1234L)
+      );
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    DatagenTask.Quickstart selected =
+        DatagenTask.Quickstart.valueOf(quickstart.toUpperCase(Locale.ROOT));
+    avroSchema = new Schema.Parser().parse(
+        getClass().getClassLoader().getResourceAsStream(selected.getSchemaFilename())
+    );
+    generator = new Generator(avroSchema, new Random(1234L));
+    avroData = new AvroData(1);
+    conversionPlan = new ConversionPlan(avroSchema);
+    keyReader = conversionPlan.fieldReader(selected.getSchemaKeyField());
+    pool = new Object[POOL_SIZE];
+    for (int i = 0; i < POOL_SIZE; i++) {
+      pool[i] = generator.generate();
+    }
+  }
+
+  private Object nextRecord() {
+    next = (next + 1) & (POOL_SIZE - 1);
+    return pool[next];
+  }
+
+  @Benchmark
+  public Object generate() {
+    return generator.generate();
+  }
+
+  @Benchmark
+  public Object convert() {
+    return conversionPlan.convert(nextRecord());
+  }
+
+  @Benchmark
+  public Object convertWithAvroData() {
+    return avroData.toConnectData(avroSchema, nextRecord()).value();
+  }
+
+  @Benchmark
+  public String extractKey() {
+    return keyReader.convert(nextRecord()).toString();
+  }
+
+  @Benchmark
+  public Object generateNative(NativeEngine nativeEngine) {
+    return nativeEngine.generator.generate();
+  }
+}
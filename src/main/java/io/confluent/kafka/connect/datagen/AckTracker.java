@@ -0,0 +1,128 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers when records were handed to the worker, by their position, so that the time until
+ * Kafka acknowledges them can be measured. Stamps go into a fixed ring of slots, which the task
+ * thread writes and the producer's callback thread reads without locking. A record still
+ * unacknowledged when its slot is reused by a later one is counted but not timed.
+ */
+final class AckTracker {
+
+  private static final long EMPTY = -1L;
+
+  private final int mask;
+  private final AtomicLongArray positions;
+  private final AtomicLongArray stamps;
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder acked = new LongAdder();
+  private final LongAdder untimed = new LongAdder();
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  /**
+   * @param capacity the number of records that can be in flight and still be timed, rounded up
+   *                 to a power of two
+   */
+  AckTracker(int capacity) {
+    final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.positions = new AtomicLongArray(size);
+    this.stamps = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      positions.set(i, EMPTY);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Stamp the record at {@code position} as handed out at {@code nanos}. Only called by the
+   * task's thread.
+   */
+  void sent(long position, long nanos) {
+    final int slot = (int) position & mask;
+    // Invalidate the slot first, so a reader never pairs the old position with the new stamp
+    positions.set(slot, EMPTY);
+    stamps.set(slot, nanos);
+    positions.set(slot, position);
+    sent.increment();
+  }
+
+  /**
+   * Record that Kafka acknowledged the record at {@code position} at {@code nanos}.
+   */
+  void acked(long position, long nanos) {
+    acked.increment();
+    final int slot = (int) position & mask;
+    if (positions.get(slot) == position) {
+      final long stamp = stamps.get(slot);
+      if (positions.get(slot) == position) {
+        final long value = nanos - stamp;
+        latency.record(value);
+        long current = maxLatency.get();
+        while (value > current && !maxLatency.compareAndSet(current, value)) {
+          current = maxLatency.get();
+        }
+        return;
+      }
+    }
+    untimed.increment();
+  }
+
+  long inFlight() {
+    return Math.max(0L, sent.sum() - acked.sum());
+  }
+
+  long sent() {
+    return sent.sum();
+  }
+
+  long acked() {
+    return acked.sum();
+  }
+
+  /**
+   * The acknowledgements that could not be timed because their slot had already been reused.
+   */
+  long untimed() {
+    return untimed.sum();
+  }
+
+  /**
+   * The acknowledgement latencies recorded since the last call.
+   */
+  LatencyHistogram getAndResetLatency() {
+    return latency.getAndReset();
+  }
+
+  /**
+   * The highest acknowledgement latency since the last call, independently of
+   * {@link #getAndResetLatency()}.
+   */
+  long getAndResetMaxLatency() {
+    return maxLatency.getAndSet(0L);
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adjusts a task's record rate to what Kafka acknowledges, additive-increase,
+ * multiplicative-decrease style. The rate doubles every round until the first congestion, then
+ * grows by a fraction of the rate congestion was last seen at, and is halved whenever too many
+ * records are in flight or acknowledgements take longer than the latency target.
+ *
+ * <p>A round ends once every record sent before it started is acknowledged, and lasts at least
+ * {@link #MIN_ROUND_NANOS}, so each change is judged on records sent at the new rate. The
+ * in-flight limit is also a hard limit: {@link #room()} tells how many more records can be sent
+ * before some are acknowledged. Only used by the task's thread.
+ */
+final class AdaptiveRateController {
+
+  private static final Logger log = LoggerFactory.getLogger(AdaptiveRateController.class);
+
+  // The rate to start from when throughput.records.per.sec is not set
+  static final long DEFAULT_INITIAL_RATE = 100L;
+  static final long MIN_ROUND_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  // How long a task with the maximum in flight waits before polling again
+  static final long FULL_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static final double MIN_RATE = 1.0;
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final double INCREASE_FRACTION = 1.0 / 16;
+
+  private final RateLimiter limiter;
+  private final AckTracker acks;
+  private final long maxInFlight;
+  private final long latencyTargetNanos;
+  private double rate;
+  // The rate congestion was last seen at, or 0 before the first congestion
+  private double congestionRate;
+  private long roundStartNanos;
+  private long roundStartAcked;
+  private long roundEndSent;
+
+  /**
+   * @param latencyTargetNanos the highest acknowledgement latency to allow, or 0 for no target
+   */
+  AdaptiveRateController(
+      RateLimiter limiter, AckTracker acks, double initialRate, long maxInFlight,
+      long latencyTargetNanos, long nowNanos
+  ) {
+    this.limiter = limiter;
+    this.acks = acks;
+    this.maxInFlight = maxInFlight;
+    this.latencyTargetNanos = latencyTargetNanos;
+    this.rate = Math.max(MIN_RATE, initialRate);
+    this.roundStartNanos = nowNanos;
+    limiter.setRate(rate);
+  }
+
+  double rate() {
+    return rate;
+  }
+
+  /**
+   * The number of records that can be sent before the in-flight limit is reached.
+   */
+  long room() {
+    return Math.max(0L, maxInFlight - acks.inFlight());
+  }
+
+  /**
+   * End the round if it is over, and set the rate for the next one.
+   *
+   * @return whether the rate was changed
+   */
+  boolean adjust(long nowNanos) {
+    final long elapsed = nowNanos - roundStartNanos;
+    final long acked = acks.acked();
+    if (elapsed < MIN_ROUND_NANOS || acked < roundEndSent) {
+      return false;
+    }
+    final long maxLatency = acks.getAndResetMaxLatency();
+    final boolean congested = acks.inFlight() >= maxInFlight
+                              || latencyTargetNanos > 0 && maxLatency > latencyTargetNanos;
+    final double ackedRate = (acked - roundStartAcked) * 1e9 / elapsed;
+    final double previous = rate;
+    if (congested) {
+      // Slow from the rate Kafka kept up with, which is below the target when generation lags.
+      // A round without any acknowledgement starts over with slow start, like TCP after a timeout
+      congestionRate = Math.min(rate, ackedRate);
+      rate = Math.max(MIN_RATE, congestionRate * DECREASE_FACTOR);
+    } else if (ackedRate >= rate * DECREASE_FACTOR) {
+      rate = congestionRate > 0 ? rate + congestionRate * INCREASE_FRACTION : rate * 2;
+    }
+    roundStartNanos = nowNanos;
+    roundStartAcked = acked;
+    roundEndSent = acks.sent();
+    if (rate == previous) {
+      return false;
+    }
+    limiter.setRate(rate);
+    log.debug("{} records/s after a round acknowledging {} records/s with max latency {} us",
+              (long) rate, (long) ackedRate, TimeUnit.NANOSECONDS.toMicros(maxLatency));
+    return true;
+  }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.confluent.connect.avro.AvroData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.ConnectException;
+
+/**
+ * Converts generated Avro data to Connect data with a tree of converters that is built once per
+ * schema. Every node already knows its field positions and its Connect schema, so a record is
+ * converted in a single positional pass without building any schemas. Anything the tree does not
+ * convert itself, such as logical types, enums and complex unions, is delegated to
+ * {@link AvroData} for that part of the record only, so the result is always identical to
+ * {@link AvroData#toConnectData(org.apache.avro.Schema, Object)}. The plan's {@link AvroData}
+ * caches the Connect schema of every part of the schema it may be handed, so delegated values
+ * never rebuild their schemas, and like the rest of the plan it can be shared between threads.
+ */
+class ConversionPlan {
+
+  /**
+   * Converts one Avro value to its Connect representation.
+   */
+  interface ValueConverter {
+    Object convert(Object value);
+  }
+
+  private static final ValueConverter IDENTITY = value -> value;
+  private static final ValueConverter TO_STRING = value -> value.toString();
+
+  private final org.apache.avro.Schema avroSchema;
+  private final Schema connectSchema;
+  private final AvroData avroData;
+  private final ValueConverter converter;
+
+  ConversionPlan(org.apache.avro.Schema avroSchema) {
+    this(avroSchema, new AvroData(1).toConnectSchema(avroSchema));
+  }
+
+  /**
+   * @param connectSchema the Connect schema {@link AvroData} converts {@code avroSchema} to, when
+   *                      it is already known
+   */
+  ConversionPlan(org.apache.avro.Schema avroSchema, Schema connectSchema) {
+    this.avroSchema = avroSchema;
+    this.avroData = new AvroData(Math.max(1, subschemas(avroSchema, new HashSet<>())));
+    this.connectSchema = connectSchema;
+    this.converter = compile(avroSchema, connectSchema);
+  }
+
+  Schema schema() {
+    return connectSchema;
+  }
+
+  Object convert(Object value) {
+    return converter.convert(value);
+  }
+
+  /**
+   * Compile a converter that reads the named field of a record with this plan's schema and
+   * converts it to Connect data.
+   */
+  ValueConverter fieldReader(String fieldName) {
+    final int position = field(fieldName).pos();
+    final ValueConverter fieldConverter = fieldConverter(fieldName);
+    return record -> fieldConverter.convert(((IndexedRecord) record).get(position));
+  }
+
+  /**
+   * Compile a converter for values of the named field of a record with this plan's schema.
+   */
+  ValueConverter fieldConverter(String fieldName) {
+    final ValueConverter converter =
+        compile(field(fieldName).schema(), connectSchema.field(fieldName).schema());
+    return value -> value == null ? null : converter.convert(value);
+  }
+
+  private org.apache.avro.Schema.Field field(String fieldName) {
+    final org.apache.avro.Schema.Field field = avroSchema.getField(fieldName);
+    if (field == null) {
+      throw new ConnectException("Field '" + fieldName + "' not found in the schema");
+    }
+    return field;
+  }
+
+  private ValueConverter compile(org.apache.avro.Schema avro, Schema connect) {
+    final boolean namedPrimitive = connect.name() != null && connect.type().isPrimitive();
+    if (avro.getLogicalType() != null || namedPrimitive) {
+      return delegate(avro);
+    }
+    switch (avro.getType()) {
+      case RECORD:
+        return compileRecord(avro, connect);
+      case ARRAY:
+        return compileArray(avro, connect);
+      case MAP:
+        return compileMap(avro, connect);
+      case UNION:
+        return compileUnion(avro, connect);
+      case STRING:
+        return connect.type() == Schema.Type.STRING ? TO_STRING : delegate(avro);
+      case INT:
+        return connect.type() == Schema.Type.INT32 ? IDENTITY : delegate(avro);
+      case LONG:
+        return connect.type() == Schema.Type.INT64 ? IDENTITY : delegate(avro);
+      case FLOAT:
+        return connect.type() == Schema.Type.FLOAT32 ? IDENTITY : delegate(avro);
+      case DOUBLE:
+        return connect.type() == Schema.Type.FLOAT64 ? IDENTITY : delegate(avro);
+      case BOOLEAN:
+        return connect.type() == Schema.Type.BOOLEAN ? IDENTITY : delegate(avro);
+      case NULL:
+        return value -> null;
+      default:
+        return delegate(avro);
+    }
+  }
+
+  private ValueConverter compileRecord(org.apache.avro.Schema avro, Schema connect) {
+    final List<org.apache.avro.Schema.Field> avroFields = avro.getFields();
+    final int[] positions = new int[avroFields.size()];
+    final Field[] fields = new Field[avroFields.size()];
+    final ValueConverter[] converters = new ValueConverter[avroFields.size()];
+    for (int i = 0; i < positions.length; i++) {
+      final org.apache.avro.Schema.Field avroField = avroFields.get(i);
+      positions[i] = avroField.pos();
+      fields[i] = connect.field(avroField.name());
+      if (fields[i] == null) {
+        return delegate(avro);
+      }
+      converters[i] = compile(avroField.schema(), fields[i].schema());
+    }
+    return value -> {
+      final IndexedRecord record = (IndexedRecord) value;
+      final Struct struct = new Struct(connect);
+      for (int i = 0; i < positions.length; i++) {
+        final Object fieldValue = record.get(positions[i]);
+        struct.put(fields[i], fieldValue == null ? null : converters[i].convert(fieldValue));
+      }
+      return struct;
+    };
+  }
+
+  private ValueConverter compileArray(org.apache.avro.Schema avro, Schema connect) {
+    if (connect.type() != Schema.Type.ARRAY) {
+      return delegate(avro);
+    }
+    final ValueConverter elementConverter = compile(avro.getElementType(), connect.valueSchema());
+    return value -> {
+      final List<?> elements = (List<?>) value;
+      final List<Object> converted = new ArrayList<>(elements.size());
+      for (Object element : elements) {
+        converted.add(element == null ? null : elementConverter.convert(element));
+      }
+      return converted;
+    };
+  }
+
+  private ValueConverter compileMap(org.apache.avro.Schema avro, Schema connect) {
+    if (connect.type() != Schema.Type.MAP || connect.keySchema().type() != Schema.Type.STRING) {
+      return delegate(avro);
+    }
+    final ValueConverter valueConverter = compile(avro.getValueType(), connect.valueSchema());
+    return value -> {
+      final Map<?, ?> entries = (Map<?, ?>) value;
+      final Map<Object, Object> converted = new HashMap<>(entries.size() * 4 / 3 + 1);
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        final Object entryValue = entry.getValue();
+        converted.put(
+            entry.getKey().toString(),
+            entryValue == null ? null : valueConverter.convert(entryValue)
+        );
+      }
+      return converted;
+    };
+  }
+
+  private ValueConverter compileUnion(org.apache.avro.Schema avro, Schema connect) {
+    // Only the optional [null, T] unions map directly onto an optional Connect schema
+    final List<org.apache.avro.Schema> branches = avro.getTypes();
+    if (branches.size() == 2 && connect.isOptional()) {
+      if (branches.get(0).getType() == org.apache.avro.Schema.Type.NULL) {
+        return compile(branches.get(1), connect);
+      } else if (branches.get(1).getType() == org.apache.avro.Schema.Type.NULL) {
+        return compile(branches.get(0), connect);
+      }
+    }
+    return delegate(avro);
+  }
+
+  /**
+   * Count the schemas {@code avro} is made of, itself included, which bounds the number of
+   * distinct schemas values are ever delegated with.
+   */
+  private static int subschemas(org.apache.avro.Schema avro, Set<String> namedSeen) {
+    switch (avro.getType()) {
+      case RECORD:
+        if (!namedSeen.add(avro.getFullName())) {
+          return 0;
+        }
+        int fields = 1;
+        for (org.apache.avro.Schema.Field field : avro.getFields()) {
+          fields += subschemas(field.schema(), namedSeen);
+        }
+        return fields;
+      case ARRAY:
+        return 1 + subschemas(avro.getElementType(), namedSeen);
+      case MAP:
+        return 1 + subschemas(avro.getValueType(), namedSeen);
+      case UNION:
+        int branches = 1;
+        for (org.apache.avro.Schema branch : avro.getTypes()) {
+          branches += subschemas(branch, namedSeen);
+        }
+        return branches;
+      default:
+        return 1;
+    }
+  }
+
+  private ValueConverter delegate(org.apache.avro.Schema avro) {
+    return value -> avroData.toConnectData(avro, value).value();
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Random;
+
+/**
+ * Counter-based random source: after {@link #position(long)} the stream of values is a pure
+ * function of the seed, the task and the record index, in the style of SplitMix64. Positioning
+ * is O(1), so any record can be regenerated without replaying the records before it, and records
+ * can be generated on different threads without sharing state.
+ *
+ * <p>Like {@link Random}, instances are not meant to be shared between threads.
+ */
+class CounterRandom extends Random {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final long RECORD_GAMMA = 0xd1b54a32d192ed03L;
+
+  private final long streamSeed;
+  private long state;
+
+  CounterRandom(long seed, int taskId) {
+    this.streamSeed = mix64(seed ^ mix64(taskId * GOLDEN_GAMMA));
+    position(0L);
+  }
+
+  /**
+   * Reset the stream to the start of the values for the given record.
+   */
+  void position(long recordIndex) {
+    setSeed(mix64(streamSeed + recordIndex * RECORD_GAMMA));
+  }
+
+  @Override
+  public synchronized void setSeed(long seed) {
+    // Also clears the cached Gaussian in the superclass
+    super.setSeed(seed);
+    state = seed;
+  }
+
+  @Override
+  protected int next(int bits) {
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+  @Override
+  public long nextLong() {
+    state += GOLDEN_GAMMA;
+    return mix64(state);
+  }
+
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * 0x1.0p-53;
+  }
+
+  private static long mix64(long value) {
+    long z = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -16,13 +16,21 @@
 
 package io.confluent.kafka.connect.datagen;
 
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.Task;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.source.SourceConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +40,8 @@ public class DatagenConnector extends SourceConnector {
   private static Logger log = LoggerFactory.getLogger(DatagenConnector.class);
   private DatagenConnectorConfig config;
   private Map<String, String> props;
+  private SchemaCache.Entry schemaEntry;
+  private String schemaKeyField;
 
   @Override
   public String version() {
@@ -43,6 +53,7 @@ public class DatagenConnector extends SourceConnector {
     try {
       this.props = props;
       config = new DatagenConnectorConfig(props);
+      loadSchema();
     } catch (ConfigException e) {
       throw new ConfigException(
           "Datagen connector could not start because of an error in the configuration: ",
@@ -51,6 +62,76 @@ public class DatagenConnector extends SourceConnector {
     }
   }
 
+  /**
+   * Load and validate the schema once for all tasks, so that a bad schema fails the connector
+   * rather than every one of its tasks, and tasks never need the schema file themselves.
+   */
+  private void loadSchema() {
+    String schemaFilename = config.getSchemaFilename();
+    String keyField = config.getSchemaKeyfield();
+    final String quickstartName = config.getQuickstart();
+    final String content;
+    try {
+      final InputStream in;
+      if (!quickstartName.isEmpty()) {
+        final DatagenTask.Quickstart quickstart;
+        try {
+          quickstart = DatagenTask.Quickstart.valueOf(quickstartName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+          throw new ConfigException(DatagenConnectorConfig.QUICKSTART_CONF, quickstartName,
+                                    "Unknown quickstart");
+        }
+        schemaFilename = quickstart.getSchemaFilename();
+        keyField = quickstart.getSchemaKeyField();
+        in = getClass().getClassLoader().getResourceAsStream(schemaFilename);
+        if (in == null) {
+          throw new FileNotFoundException(schemaFilename);
+        }
+      } else {
+        in = new FileInputStream(schemaFilename);
+      }
+      content = DatagenTask.readFully(in);
+    } catch (IOException e) {
+      throw new ConfigException(DatagenConnectorConfig.SCHEMA_FILENAME_CONF, schemaFilename,
+                                "Unable to read the schema file: " + e);
+    }
+
+    // Tasks get the compact form of the schema, and find it in the cache when they run in the
+    // same worker as the connector
+    final SchemaCache.Entry entry;
+    try {
+      entry = SchemaCache.acquire(new Schema.Parser().parse(content));
+    } catch (SchemaParseException e) {
+      throw new ConfigException(DatagenConnectorConfig.SCHEMA_FILENAME_CONF, schemaFilename,
+                                "Invalid schema: " + e.getMessage());
+    } catch (DataException e) {
+      throw new ConfigException(DatagenConnectorConfig.SCHEMA_FILENAME_CONF, schemaFilename,
+                                "Schema not supported by Connect: " + e.getMessage());
+    }
+    final Schema avroSchema = entry.avroSchema();
+    String problem = null;
+    if (avroSchema.getType() != Schema.Type.RECORD) {
+      problem = "The schema is not a record";
+    } else if (!keyField.isEmpty() && avroSchema.getField(keyField) == null) {
+      problem = "The key field '" + keyField + "' is not in the schema";
+    }
+    if (problem != null) {
+      SchemaCache.release(entry);
+      throw new ConfigException(DatagenConnectorConfig.SCHEMA_FILENAME_CONF, schemaFilename,
+                                problem);
+    }
+    releaseSchema();
+    schemaEntry = entry;
+    schemaKeyField = keyField;
+  }
+
+  private void releaseSchema() {
+    if (schemaEntry != null) {
+      SchemaCache.release(schemaEntry);
+      schemaEntry = null;
+    }
+  }
+
   @Override
   public Class<? extends Task> taskClass() {
     return DatagenTask.class;
@@ -58,15 +139,59 @@ public class DatagenConnector extends SourceConnector {
 
   @Override
   public List<Map<String, String>> taskConfigs(int maxTasks) {
-    List<Map<String, String>> taskConfigs = new ArrayList<>();
-    for (int i = 0; i < maxTasks; i++) {
-      taskConfigs.add(this.props);
+    final long iterations = config.getIterations();
+    final long recordsPerSec = config.getThroughputRecordsPerSec();
+    final long bytesPerSec = config.getThroughputBytesPerSec();
+
+    // A task whose share rounds down to zero would run unlimited, so use fewer tasks instead
+    int numTasks = maxTasks;
+    for (long total : new long[]{iterations, recordsPerSec, bytesPerSec}) {
+      if (total > 0) {
+        numTasks = (int) Math.min(numTasks, total);
+      }
+    }
+
+    List<Map<String, String>> taskConfigs = new ArrayList<>(numTasks);
+    for (int i = 0; i < numTasks; i++) {
+      Map<String, String> taskConfig = new HashMap<>(this.props);
+      taskConfig.put(DatagenTaskConfig.TASK_ID_CONF, Integer.toString(i));
+      taskConfig.put(DatagenTaskConfig.TASK_COUNT_CONF, Integer.toString(numTasks));
+      taskConfig.put(DatagenTaskConfig.TASK_SCHEMA_CONF, schemaEntry.plan().toJson());
+      taskConfig.put(DatagenTaskConfig.TASK_SCHEMA_KEYFIELD_CONF, schemaKeyField);
+      if (iterations > 0) {
+        taskConfig.put(
+            DatagenConnectorConfig.ITERATIONS_CONF,
+            Long.toString(share(iterations, i, numTasks))
+        );
+      }
+      if (recordsPerSec > 0) {
+        taskConfig.put(
+            DatagenConnectorConfig.THROUGHPUT_RECORDS_CONF,
+            Long.toString(share(recordsPerSec, i, numTasks))
+        );
+      }
+      if (bytesPerSec > 0) {
+        taskConfig.put(
+            DatagenConnectorConfig.THROUGHPUT_BYTES_CONF,
+            Long.toString(share(bytesPerSec, i, numTasks))
+        );
+      }
+      taskConfigs.add(taskConfig);
     }
     return taskConfigs;
   }
 
+  /**
+   * Split {@code total} evenly across tasks, handing the remainder out one at a time to the
+   * lowest task indexes so that the shares always sum to exactly {@code total}.
+   */
+  static long share(long total, int taskId, int taskCount) {
+    return total / taskCount + (taskId < total % taskCount ? 1 : 0);
+  }
+
   @Override
   public void stop() {
+    releaseSchema();
   }
 
   @Override
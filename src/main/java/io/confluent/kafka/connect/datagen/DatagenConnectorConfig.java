@@ -16,31 +16,177 @@
 
 package io.confluent.kafka.connect.datagen;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.config.ConfigDef.Type;
 import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigDef.Range;
+import org.apache.kafka.common.config.ConfigDef.ValidString;
 
 public class DatagenConnectorConfig extends AbstractConfig {
 
   public static final String KAFKA_TOPIC_CONF = "kafka.topic";
   private static final String KAFKA_TOPIC_DOC = "Topic to write to";
   public static final String MAXINTERVAL_CONF = "max.interval";
-  private static final String MAXINTERVAL_DOC = "Max interval between messages (ms)";
+  private static final String MAXINTERVAL_DOC = "Max interval between messages (ms), or between "
+                                                + "batches when more than one message is returned "
+                                                + "per poll";
   public static final String ITERATIONS_CONF = "iterations";
-  private static final String ITERATIONS_DOC = "Number of messages to send, or less than 1 for "
-                                               + "unlimited";
+  private static final String ITERATIONS_DOC = "Number of messages to send across all tasks, or "
+                                               + "less than 1 for unlimited";
   public static final String SCHEMA_FILENAME_CONF = "schema.filename";
   private static final String SCHEMA_FILENAME_DOC = "Filename of schema to use";
   public static final String SCHEMA_KEYFIELD_CONF = "schema.keyfield";
   private static final String SCHEMA_KEYFIELD_DOC = "Name of field to use as the message key";
   public static final String QUICKSTART_CONF = "quickstart";
   private static final String QUICKSTART_DOC = "Name of quickstart to use";
+  public static final String BATCH_SIZE_CONF = "batch.size";
+  private static final String BATCH_SIZE_DOC = "Maximum number of messages to return from a "
+                                               + "single poll";
+  public static final String BATCH_MAX_BYTES_CONF = "batch.max.bytes";
+  private static final String BATCH_MAX_BYTES_DOC = "Maximum estimated size (bytes) of the messages "
+                                                    + "returned from a single poll, or less than 1 "
+                                                    + "for unlimited";
+  public static final String THROUGHPUT_RECORDS_CONF = "throughput.records.per.sec";
+  private static final String THROUGHPUT_RECORDS_DOC = "Target number of messages to generate per "
+                                                       + "second across all tasks, or less than 1 "
+                                                       + "for no target. When set, max.interval is "
+                                                       + "ignored";
+  public static final String THROUGHPUT_BYTES_CONF = "throughput.bytes.per.sec";
+  private static final String THROUGHPUT_BYTES_DOC = "Target estimated size (bytes) of the messages "
+                                                     + "to generate per second across all tasks, or "
+                                                     + "less than 1 for no target. When set, "
+                                                     + "max.interval is ignored";
+  public static final String RATE_MODE_CONF = "rate.mode";
+  public static final String RATE_MODE_FIXED = "fixed";
+  public static final String RATE_MODE_ADAPTIVE = "adaptive";
+  private static final String RATE_MODE_DOC = "How the message rate is set: 'fixed' keeps to "
+                                              + "throughput.records.per.sec, and 'adaptive' "
+                                              + "starts from it, or from 100 messages per second "
+                                              + "per task, and then follows the rate Kafka "
+                                              + "acknowledges, backing off whenever a task has "
+                                              + "too many messages in flight or they take longer "
+                                              + "than the latency target";
+  public static final String RATE_ADAPTIVE_MAX_IN_FLIGHT_CONF = "rate.adaptive.max.in.flight";
+  private static final String RATE_ADAPTIVE_MAX_IN_FLIGHT_DOC = "Maximum number of messages each "
+                                                                + "task keeps unacknowledged in "
+                                                                + "the adaptive rate mode";
+  public static final String RATE_ADAPTIVE_LATENCY_TARGET_MS_CONF =
+      "rate.adaptive.latency.target.ms";
+  private static final String RATE_ADAPTIVE_LATENCY_TARGET_MS_DOC = "Highest acknowledgement "
+                                                                    + "latency (ms) the adaptive "
+                                                                    + "rate mode allows, or less "
+                                                                    + "than 1 for no target";
+  public static final String TASK_SHARDING_CONF = "task.sharding";
+  private static final String TASK_SHARDING_DOC = "Whether each task generates a disjoint share of "
+                                                  + "the iteration sequences and of the key field's "
+                                                  + "range or options";
+  public static final String GENERATOR_SEED_CONF = "generator.seed";
+  private static final String GENERATOR_SEED_DOC = "Seed for reproducible generation. When set, the "
+                                                   + "random values of every message are derived "
+                                                   + "from the seed, the task and the message's "
+                                                   + "index, so runs can be repeated exactly";
+  public static final String PIPELINE_THREADS_CONF = "pipeline.threads";
+  private static final String PIPELINE_THREADS_DOC = "Number of background threads generating "
+                                                     + "messages for each task, or 0 to generate "
+                                                     + "them in the task's poll";
+  public static final String PIPELINE_BUFFER_SIZE_CONF = "pipeline.buffer.size";
+  private static final String PIPELINE_BUFFER_SIZE_DOC = "Number of generated messages each "
+                                                         + "background thread can buffer ahead of "
+                                                         + "the task's poll";
+  public static final String GENERATOR_THREADS_CONF = "generator.threads";
+  private static final String GENERATOR_THREADS_DOC = "Number of threads each task uses to generate "
+                                                      + "a batch of messages in parallel during "
+                                                      + "its poll. Cannot be combined with "
+                                                      + PIPELINE_THREADS_CONF;
+  public static final String GENERATOR_ENGINE_CONF = "generator.engine";
+  public static final String GENERATOR_ENGINE_AVRO = "avro";
+  public static final String GENERATOR_ENGINE_NATIVE = "native";
+  private static final String GENERATOR_ENGINE_DOC = "How messages are generated: 'avro' generates "
+                                                     + "an Avro record and converts it to a Connect "
+                                                     + "struct, 'native' writes the struct directly. "
+                                                     + "Schemas using annotations the native engine "
+                                                     + "does not support fall back to 'avro'";
+  public static final String VALUE_FORMAT_CONF = "value.format";
+  public static final String VALUE_FORMAT_CONNECT = "connect";
+  public static final String VALUE_FORMAT_AVRO_BINARY = "avro-binary";
+  public static final String VALUE_FORMAT_JSON = "json";
+  public static final String VALUE_FORMAT_CONFLUENT_AVRO = "confluent-avro";
+  private static final String VALUE_FORMAT_DOC = "Format of the message values: 'connect' for "
+                                                 + "Connect structs to be serialized by the "
+                                                 + "worker's converter, or 'avro-binary', 'json' "
+                                                 + "or 'confluent-avro' for values serialized by "
+                                                 + "the task itself, to be used with the "
+                                                 + "ByteArrayConverter. Serialized values are "
+                                                 + "always generated with the 'avro' engine";
+  public static final String VALUE_SCHEMA_ID_CONF = "value.schema.id";
+  private static final String VALUE_SCHEMA_ID_DOC = "Schema Registry ID written ahead of every "
+                                                    + "'confluent-avro' message value. When not "
+                                                    + "set, the schema is registered with "
+                                                    + "value.schema.registry.url, or without a "
+                                                    + "registry an ID is derived from the schema "
+                                                    + "that deserializers will not be able to look "
+                                                    + "up";
+  public static final String VALUE_SCHEMA_REGISTRY_URL_CONF = "value.schema.registry.url";
+  private static final String VALUE_SCHEMA_REGISTRY_URL_DOC = "Schema Registry to register the "
+                                                              + "'confluent-avro' value schema "
+                                                              + "with when each task starts";
+  public static final String VALUE_SCHEMA_SUBJECT_CONF = "value.schema.subject";
+  private static final String VALUE_SCHEMA_SUBJECT_DOC = "Subject to register the value schema "
+                                                         + "under, by default the topic name "
+                                                         + "followed by '-value'";
+  public static final String POOL_SIZE_CONF = "pool.size";
+  private static final String POOL_SIZE_DOC = "Number of messages each task generates once when "
+                                              + "it starts and then sends over and over, or 0 to "
+                                              + "generate every message. Replaying a pool costs "
+                                              + "next to no CPU per message, which is useful to "
+                                              + "measure Kafka rather than the generator";
+  public static final String POOL_REWRITE_CONF = "pool.rewrite";
+  public static final String POOL_REWRITE_NONE = "none";
+  public static final String POOL_REWRITE_KEY = "key";
+  public static final String POOL_REWRITE_TIMESTAMP = "timestamp";
+  private static final String POOL_REWRITE_DOC = "What changes between replays of the pool: "
+                                                 + "'none' sends the pooled messages unchanged, "
+                                                 + "'key' replaces every key with the message's "
+                                                 + "index and 'timestamp' sets every message's "
+                                                 + "timestamp to the time it is sent";
+  public static final String DELTA_FIELDS_CONF = "delta.fields";
+  private static final String DELTA_FIELDS_DOC = "Top-level fields that are regenerated for every "
+                                                 + "message, as 'name' or 'name:probability' to "
+                                                 + "regenerate a field only with that probability. "
+                                                 + "When set, all other fields are copied from one "
+                                                 + "of delta.templates messages generated when "
+                                                 + "each task starts. Fields with an iteration "
+                                                 + "cannot have a probability";
+  public static final String DELTA_TEMPLATES_CONF = "delta.templates";
+  private static final String DELTA_TEMPLATES_DOC = "Number of template messages the fields that "
+                                                    + "are not in delta.fields are copied from";
+  public static final String METRICS_INTERVAL_MS_CONF = "metrics.interval.ms";
+  private static final String METRICS_INTERVAL_MS_DOC = "How often (ms) each task logs the "
+                                                        + "percentiles of its generation latency "
+                                                        + "and schedule lateness, which are also "
+                                                        + "the window of the percentiles it "
+                                                        + "exposes over JMX";
+  public static final String JFR_EVENTS_ENABLED_CONF = "jfr.events.enabled";
+  private static final String JFR_EVENTS_ENABLED_DOC = "Whether tasks emit a JDK Flight Recorder "
+                                                       + "event for every polled batch, on JVMs "
+                                                       + "with Flight Recorder";
+
+  private final Map<String, Double> deltaFields;
 
   public DatagenConnectorConfig(ConfigDef config, Map<String, String> parsedConfig) {
     super(config, parsedConfig);
+    if (getPipelineThreads() > 0 && getGeneratorThreads() > 1) {
+      throw new ConfigException(GENERATOR_THREADS_CONF, getGeneratorThreads(),
+                                "Cannot be combined with " + PIPELINE_THREADS_CONF);
+    }
+    deltaFields = parseDeltaFields(getList(DELTA_FIELDS_CONF));
   }
 
   public DatagenConnectorConfig(Map<String, String> parsedConfig) {
@@ -54,7 +200,49 @@ public class DatagenConnectorConfig extends AbstractConfig {
         .define(ITERATIONS_CONF, Type.INT, -1, Importance.HIGH, ITERATIONS_DOC)
         .define(SCHEMA_FILENAME_CONF, Type.STRING, "", Importance.HIGH, SCHEMA_FILENAME_DOC)
         .define(SCHEMA_KEYFIELD_CONF, Type.STRING, "", Importance.HIGH, SCHEMA_KEYFIELD_DOC)
-        .define(QUICKSTART_CONF, Type.STRING, "", Importance.HIGH, QUICKSTART_DOC);
+        .define(QUICKSTART_CONF, Type.STRING, "", Importance.HIGH, QUICKSTART_DOC)
+        .define(BATCH_SIZE_CONF, Type.INT, 1, Range.atLeast(1), Importance.MEDIUM, BATCH_SIZE_DOC)
+        .define(BATCH_MAX_BYTES_CONF, Type.LONG, -1L, Importance.MEDIUM, BATCH_MAX_BYTES_DOC)
+        .define(THROUGHPUT_RECORDS_CONF, Type.LONG, -1L, Importance.MEDIUM, THROUGHPUT_RECORDS_DOC)
+        .define(THROUGHPUT_BYTES_CONF, Type.LONG, -1L, Importance.MEDIUM, THROUGHPUT_BYTES_DOC)
+        .define(RATE_MODE_CONF, Type.STRING, RATE_MODE_FIXED,
+                ValidString.in(RATE_MODE_FIXED, RATE_MODE_ADAPTIVE), Importance.MEDIUM,
+                RATE_MODE_DOC)
+        .define(RATE_ADAPTIVE_MAX_IN_FLIGHT_CONF, Type.LONG, 10000L, Range.atLeast(1L),
+                Importance.MEDIUM, RATE_ADAPTIVE_MAX_IN_FLIGHT_DOC)
+        .define(RATE_ADAPTIVE_LATENCY_TARGET_MS_CONF, Type.LONG, -1L, Importance.MEDIUM,
+                RATE_ADAPTIVE_LATENCY_TARGET_MS_DOC)
+        .define(TASK_SHARDING_CONF, Type.BOOLEAN, false, Importance.MEDIUM, TASK_SHARDING_DOC)
+        .define(GENERATOR_SEED_CONF, Type.LONG, null, Importance.LOW, GENERATOR_SEED_DOC)
+        .define(PIPELINE_THREADS_CONF, Type.INT, 0, Range.atLeast(0), Importance.LOW,
+                PIPELINE_THREADS_DOC)
+        .define(PIPELINE_BUFFER_SIZE_CONF, Type.INT, 1024, Range.atLeast(1), Importance.LOW,
+                PIPELINE_BUFFER_SIZE_DOC)
+        .define(GENERATOR_THREADS_CONF, Type.INT, 1, Range.atLeast(1), Importance.LOW,
+                GENERATOR_THREADS_DOC)
+        .define(GENERATOR_ENGINE_CONF, Type.STRING, GENERATOR_ENGINE_AVRO,
+                ValidString.in(GENERATOR_ENGINE_AVRO, GENERATOR_ENGINE_NATIVE), Importance.LOW,
+                GENERATOR_ENGINE_DOC)
+        .define(VALUE_FORMAT_CONF, Type.STRING, VALUE_FORMAT_CONNECT,
+                ValidString.in(VALUE_FORMAT_CONNECT, VALUE_FORMAT_AVRO_BINARY, VALUE_FORMAT_JSON,
+                               VALUE_FORMAT_CONFLUENT_AVRO),
+                Importance.MEDIUM, VALUE_FORMAT_DOC)
+        .define(VALUE_SCHEMA_ID_CONF, Type.INT, -1, Importance.MEDIUM, VALUE_SCHEMA_ID_DOC)
+        .define(VALUE_SCHEMA_REGISTRY_URL_CONF, Type.STRING, "", Importance.MEDIUM,
+                VALUE_SCHEMA_REGISTRY_URL_DOC)
+        .define(VALUE_SCHEMA_SUBJECT_CONF, Type.STRING, "", Importance.LOW,
+                VALUE_SCHEMA_SUBJECT_DOC)
+        .define(POOL_SIZE_CONF, Type.INT, 0, Range.atLeast(0), Importance.LOW, POOL_SIZE_DOC)
+        .define(POOL_REWRITE_CONF, Type.STRING, POOL_REWRITE_NONE,
+                ValidString.in(POOL_REWRITE_NONE, POOL_REWRITE_KEY, POOL_REWRITE_TIMESTAMP),
+                Importance.LOW, POOL_REWRITE_DOC)
+        .define(DELTA_FIELDS_CONF, Type.LIST, "", Importance.LOW, DELTA_FIELDS_DOC)
+        .define(DELTA_TEMPLATES_CONF, Type.INT, 16, Range.atLeast(1), Importance.LOW,
+                DELTA_TEMPLATES_DOC)
+        .define(METRICS_INTERVAL_MS_CONF, Type.LONG, 60000L, Range.atLeast(1L), Importance.LOW,
+                METRICS_INTERVAL_MS_DOC)
+        .define(JFR_EVENTS_ENABLED_CONF, Type.BOOLEAN, false, Importance.LOW,
+                JFR_EVENTS_ENABLED_DOC);
   }
 
   public String getKafkaTopic() {
@@ -81,5 +269,124 @@ public class DatagenConnectorConfig extends AbstractConfig {
     return this.getString(QUICKSTART_CONF);
   }
 
+  public Integer getBatchSize() {
+    return this.getInt(BATCH_SIZE_CONF);
+  }
+
+  public Long getBatchMaxBytes() {
+    return this.getLong(BATCH_MAX_BYTES_CONF);
+  }
+
+  public Long getThroughputRecordsPerSec() {
+    return this.getLong(THROUGHPUT_RECORDS_CONF);
+  }
+
+  public Long getThroughputBytesPerSec() {
+    return this.getLong(THROUGHPUT_BYTES_CONF);
+  }
+
+  public String getRateMode() {
+    return this.getString(RATE_MODE_CONF);
+  }
+
+  public Long getRateAdaptiveMaxInFlight() {
+    return this.getLong(RATE_ADAPTIVE_MAX_IN_FLIGHT_CONF);
+  }
+
+  public Long getRateAdaptiveLatencyTargetMs() {
+    return this.getLong(RATE_ADAPTIVE_LATENCY_TARGET_MS_CONF);
+  }
+
+  public Boolean getTaskSharding() {
+    return this.getBoolean(TASK_SHARDING_CONF);
+  }
+
+  public Long getGeneratorSeed() {
+    return this.getLong(GENERATOR_SEED_CONF);
+  }
+
+  public Integer getPipelineThreads() {
+    return this.getInt(PIPELINE_THREADS_CONF);
+  }
+
+  public Integer getPipelineBufferSize() {
+    return this.getInt(PIPELINE_BUFFER_SIZE_CONF);
+  }
+
+  public Integer getGeneratorThreads() {
+    return this.getInt(GENERATOR_THREADS_CONF);
+  }
+
+  public String getGeneratorEngine() {
+    return this.getString(GENERATOR_ENGINE_CONF);
+  }
+
+  public String getValueFormat() {
+    return this.getString(VALUE_FORMAT_CONF);
+  }
+
+  public Integer getValueSchemaId() {
+    return this.getInt(VALUE_SCHEMA_ID_CONF);
+  }
+
+  public String getValueSchemaRegistryUrl() {
+    return this.getString(VALUE_SCHEMA_REGISTRY_URL_CONF);
+  }
+
+  public String getValueSchemaSubject() {
+    return this.getString(VALUE_SCHEMA_SUBJECT_CONF);
+  }
+
+  public Integer getPoolSize() {
+    return this.getInt(POOL_SIZE_CONF);
+  }
+
+  public String getPoolRewrite() {
+    return this.getString(POOL_REWRITE_CONF);
+  }
+
+  /**
+   * The volatile fields of {@code delta.fields} and the probability they are regenerated with,
+   * in the order they were configured.
+   */
+  public Map<String, Double> getDeltaFields() {
+    return deltaFields;
+  }
+
+  public Integer getDeltaTemplates() {
+    return this.getInt(DELTA_TEMPLATES_CONF);
+  }
+
+  public Long getMetricsIntervalMs() {
+    return this.getLong(METRICS_INTERVAL_MS_CONF);
+  }
+
+  public Boolean getJfrEventsEnabled() {
+    return this.getBoolean(JFR_EVENTS_ENABLED_CONF);
+  }
+
+  private static Map<String, Double> parseDeltaFields(List<String> entries) {
+    final Map<String, Double> fields = new LinkedHashMap<>();
+    for (String entry : entries) {
+      final int separator = entry.lastIndexOf(':');
+      final String name = separator < 0 ? entry.trim() : entry.substring(0, separator).trim();
+      double probability = 1.0;
+      if (separator >= 0) {
+        try {
+          probability = Double.parseDouble(entry.substring(separator + 1).trim());
+        } catch (NumberFormatException e) {
+          probability = Double.NaN;
+        }
+      }
+      if (name.isEmpty() || !(probability > 0.0 && probability <= 1.0)) {
+        throw new ConfigException(DELTA_FIELDS_CONF, entry,
+                                  "Expected a field name, optionally followed by ':' and a "
+                                  + "probability greater than 0 and at most 1");
+      }
+      fields.put(name, probability);
+    }
+    return Collections.unmodifiableMap(fields);
+  }
+
 }
 
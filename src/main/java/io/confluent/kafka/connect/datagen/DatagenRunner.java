@@ -0,0 +1,248 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.storage.Converter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs datagen tasks without a Connect worker or Kafka, to measure how fast records can be
+ * generated. The connector is configured from a properties file as usual and split into
+ * {@code tasks.max} tasks, each polled in a tight loop on its own thread. The records are
+ * discarded, or serialized with the {@code value.converter} and then discarded, which counts as
+ * Kafka acknowledging them. Throughput and poll latency percentiles are printed every
+ * {@code runner.report.interval.ms}.
+ *
+ * <pre>
+ * java -cp ... io.confluent.kafka.connect.datagen.DatagenRunner datagen.properties
+ * </pre>
+ */
+public class DatagenRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(DatagenRunner.class);
+
+  public static final String TASKS_MAX_CONF = "tasks.max";
+  public static final String VALUE_CONVERTER_CONF = "value.converter";
+  public static final String DURATION_MS_CONF = "runner.duration.ms";
+  public static final String REPORT_INTERVAL_MS_CONF = "runner.report.interval.ms";
+
+  private static final long DEFAULT_REPORT_INTERVAL_MS = 5000L;
+  private static final long MAX_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Map<String, String> props;
+  private final int maxTasks;
+  private final long durationMs;
+  private final long reportIntervalMs;
+  private final LongAdder records = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LatencyHistogram pollLatency = new LatencyHistogram();
+  private volatile boolean stopping;
+
+  DatagenRunner(Map<String, String> props) {
+    this.props = props;
+    this.maxTasks = Integer.parseInt(props.getOrDefault(TASKS_MAX_CONF, "1"));
+    this.durationMs = Long.parseLong(props.getOrDefault(DURATION_MS_CONF, "-1"));
+    this.reportIntervalMs = Long.parseLong(
+        props.getOrDefault(REPORT_INTERVAL_MS_CONF, Long.toString(DEFAULT_REPORT_INTERVAL_MS))
+    );
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("Usage: DatagenRunner <connector properties file>");
+      System.exit(1);
+    }
+    final Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(args[0])) {
+      properties.load(in);
+    }
+    final Map<String, String> props = new HashMap<>();
+    for (String name : properties.stringPropertyNames()) {
+      props.put(name, properties.getProperty(name));
+    }
+
+    final DatagenRunner runner = new DatagenRunner(props);
+    final Thread main = Thread.currentThread();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      runner.stop();
+      try {
+        main.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    runner.run(System.out);
+  }
+
+  void stop() {
+    stopping = true;
+  }
+
+  /**
+   * Generate until the duration elapses, every task reaches its iterations or {@link #stop()} is
+   * called, printing a report every interval and a summary at the end.
+   *
+   * @return the total number of records generated
+   */
+  long run(PrintStream out) throws InterruptedException {
+    final DatagenConnector connector = new DatagenConnector();
+    connector.start(props);
+    final List<Thread> threads = new ArrayList<>();
+    for (Map<String, String> taskConfig : connector.taskConfigs(maxTasks)) {
+      // Converters are not necessarily thread-safe, so every task gets its own
+      final Converter converter = newValueConverter();
+      final Thread thread = new Thread(
+          () -> runTask(taskConfig, converter),
+          "datagen-runner-task-" + taskConfig.get(DatagenTaskConfig.TASK_ID_CONF)
+      );
+      thread.start();
+      threads.add(thread);
+    }
+    out.printf("Running %d task(s)%n", threads.size());
+
+    final long start = System.nanoTime();
+    final long deadline = durationMs > 0 ? start + TimeUnit.MILLISECONDS.toNanos(durationMs)
+                                         : Long.MAX_VALUE;
+    long lastReport = start;
+    long lastRecords = 0L;
+    long lastBytes = 0L;
+    while (!stopping && anyAlive(threads) && System.nanoTime() - deadline < 0) {
+      final long untilReport = lastReport + TimeUnit.MILLISECONDS.toNanos(reportIntervalMs);
+      final long sleepNanos = Math.min(untilReport, deadline) - System.nanoTime();
+      // Sleep in short steps to notice soon when the tasks are all done
+      TimeUnit.NANOSECONDS.sleep(Math.min(sleepNanos, MAX_SLEEP_NANOS));
+      final long now = System.nanoTime();
+      if (now - untilReport >= 0) {
+        final long totalRecords = records.sum();
+        final long totalBytes = bytes.sum();
+        report(out, now - start, now - lastReport, totalRecords - lastRecords,
+               totalBytes - lastBytes, pollLatency.getAndReset());
+        lastReport = now;
+        lastRecords = totalRecords;
+        lastBytes = totalBytes;
+      }
+    }
+
+    stopping = true;
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    connector.stop();
+    final long elapsed = System.nanoTime() - start;
+    final long totalRecords = records.sum();
+    out.printf("Done: %d records in %.1fs, %.0f records/s overall%n",
+               totalRecords, elapsed / 1e9, totalRecords * 1e9 / Math.max(1L, elapsed));
+    return totalRecords;
+  }
+
+  private void runTask(Map<String, String> taskConfig, Converter converter) {
+    final DatagenTask task = new DatagenTask();
+    try {
+      task.start(taskConfig);
+      while (!stopping) {
+        final long pollStart = System.nanoTime();
+        final List<SourceRecord> batch = task.poll();
+        pollLatency.record(System.nanoTime() - pollStart);
+        if (batch == null) {
+          continue;
+        }
+        if (converter != null) {
+          long batchBytes = 0L;
+          for (SourceRecord record : batch) {
+            final byte[] serialized =
+                converter.fromConnectData(record.topic(), record.valueSchema(), record.value());
+            batchBytes += serialized != null ? serialized.length : 0;
+          }
+          bytes.add(batchBytes);
+        }
+        for (SourceRecord record : batch) {
+          task.commitRecord(record);
+        }
+        records.add(batch.size());
+      }
+    } catch (ConnectException e) {
+      // Thrown once the task has generated its iterations
+      log.info("Task {} stopped: {}", taskConfig.get(DatagenTaskConfig.TASK_ID_CONF),
+               e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      task.stop();
+    }
+  }
+
+  private Converter newValueConverter() {
+    final String className = props.get(VALUE_CONVERTER_CONF);
+    if (className == null || className.isEmpty()) {
+      return null;
+    }
+    final Converter converter;
+    try {
+      converter = Class.forName(className).asSubclass(Converter.class).newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw new ConnectException("Unable to create the '" + className + "' converter", e);
+    }
+    final String prefix = VALUE_CONVERTER_CONF + ".";
+    final Map<String, String> converterConfig = new HashMap<>();
+    for (Map.Entry<String, String> entry : props.entrySet()) {
+      if (entry.getKey().startsWith(prefix)) {
+        converterConfig.put(entry.getKey().substring(prefix.length()), entry.getValue());
+      }
+    }
+    converter.configure(converterConfig, false);
+    return converter;
+  }
+
+  private static void report(
+      PrintStream out, long elapsedNanos, long intervalNanos, long intervalRecords,
+      long intervalBytes, LatencyHistogram latency
+  ) {
+    out.printf(
+        "[%7.1fs] %,.0f records/s, %,.1f MB/s | poll latency us p50=%d p99=%d p99.9=%d max=%d%n",
+        elapsedNanos / 1e9,
+        intervalRecords * 1e9 / intervalNanos,
+        intervalBytes * 1e9 / intervalNanos / (1024 * 1024),
+        TimeUnit.NANOSECONDS.toMicros(latency.percentile(50.0)),
+        TimeUnit.NANOSECONDS.toMicros(latency.percentile(99.0)),
+        TimeUnit.NANOSECONDS.toMicros(latency.percentile(99.9)),
+        TimeUnit.NANOSECONDS.toMicros(latency.max())
+    );
+  }
+
+  private static boolean anyAlive(List<Thread> threads) {
+    for (Thread thread : threads) {
+      if (thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -16,27 +16,22 @@
 
 package io.confluent.kafka.connect.datagen;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
-import io.confluent.avro.random.generator.Generator;
-import io.confluent.connect.avro.AvroData;
-import org.apache.avro.generic.GenericData.Record;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.kafka.connect.data.SchemaAndValue;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTask;
-import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.data.SchemaBuilder;
-import org.apache.kafka.connect.data.Struct;
-import org.apache.kafka.connect.data.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,23 +39,41 @@ public class DatagenTask extends SourceTask {
 
   static final Logger log = LoggerFactory.getLogger(DatagenTask.class);
 
-  private static final Schema KEY_SCHEMA = Schema.STRING_SCHEMA;
-  private static final Map<String, ?> SOURCE_PARTITION = Collections.emptyMap();
-  private static final Map<String, ?> SOURCE_OFFSET = Collections.emptyMap();
+  static final String TASK_ID_FIELD = "task.id";
+  static final String TASK_COUNT_FIELD = "task.count";
+  static final String POSITION_FIELD = "position";
+  // Set by Connect in the connector's configuration, which every task configuration copies
+  static final String CONNECTOR_NAME_PROP = "name";
+  // Unless sizes are needed, only every this many records is measured for the metrics
+  static final int BYTES_SAMPLE_INTERVAL = 64;
 
 
-  private DatagenConnectorConfig config;
+  private DatagenTaskConfig config;
   private String topic;
   private long maxInterval;
   private int maxRecords;
+  private int batchSize;
+  private long batchMaxBytes;
+  private RateLimiter recordRateLimiter;
+  private RateLimiter byteRateLimiter;
+  private boolean estimateEveryRecord;
+  private AdaptiveRateController rateController;
   private long count = 0L;
+  private Map<String, ?> sourcePartition;
   private String schemaFilename;
   private String schemaKeyField;
   private Quickstart quickstart;
-  private Generator generator;
+  private SchemaCache.Entry schemaEntry;
   private org.apache.avro.Schema avroSchema;
-  private org.apache.kafka.connect.data.Schema ksqlSchema;
-  private AvroData avroData;
+  private RecordGenerator recordGenerator;
+  private GenerationPipeline pipeline;
+  private ParallelBatchGenerator batchGenerator;
+  private RecordPool recordPool;
+  private Object[] deltaTemplates;
+  private boolean nativeEngine;
+  private int valueSchemaId = -1;
+  private DatagenTaskMetrics metrics;
+  private FlightRecorderEvents flightRecorderEvents = FlightRecorderEvents.DISABLED;
 
   protected enum Quickstart {
     CLICKSTREAM_CODES("clickstream_codes_schema.avro", "code"),
@@ -97,25 +110,53 @@ public class DatagenTask extends SourceTask {
 
   @Override
   public void start(Map<String, String> props) {
-    config = new DatagenConnectorConfig(props);
+    config = new DatagenTaskConfig(props);
     topic = config.getKafkaTopic();
     maxInterval = config.getMaxInterval();
     maxRecords = config.getIterations();
+    batchSize = config.getBatchSize();
+    batchMaxBytes = config.getBatchMaxBytes();
+    if (config.getThroughputRecordsPerSec() > 0) {
+      recordRateLimiter = new RateLimiter(config.getThroughputRecordsPerSec());
+    }
+    if (config.getThroughputBytesPerSec() > 0) {
+      byteRateLimiter = new RateLimiter(config.getThroughputBytesPerSec());
+    }
+    metrics = new DatagenTaskMetrics(props.getOrDefault(CONNECTOR_NAME_PROP, topic),
+                                     config.getTaskId(), config.getThroughputRecordsPerSec(),
+                                     config.getThroughputBytesPerSec(),
+                                     config.getMetricsIntervalMs());
+    if (DatagenConnectorConfig.RATE_MODE_ADAPTIVE.equals(config.getRateMode())) {
+      final long initialRate = config.getThroughputRecordsPerSec() > 0
+                               ? config.getThroughputRecordsPerSec()
+                               : AdaptiveRateController.DEFAULT_INITIAL_RATE;
+      recordRateLimiter = new RateLimiter(initialRate);
+      rateController = new AdaptiveRateController(
+          recordRateLimiter, metrics.ackTracker(), initialRate,
+          config.getRateAdaptiveMaxInFlight(),
+          TimeUnit.MILLISECONDS.toNanos(Math.max(0L, config.getRateAdaptiveLatencyTargetMs())),
+          System.nanoTime()
+      );
+      metrics.targetRecordsPerSec(initialRate);
+    }
     schemaFilename = config.getSchemaFilename();
     schemaKeyField = config.getSchemaKeyfield();
 
     String quickstartName = config.getQuickstart();
-    if (quickstartName != "") {
+    if (!config.getTaskSchema().isEmpty()) {
+      // Already loaded and validated by the connector, so there is no file to read
+      schemaEntry = SchemaCache.acquire(config.getTaskSchema());
+      schemaKeyField = config.getTaskSchemaKeyfield();
+    } else if (quickstartName != "") {
       try {
         quickstart = Quickstart.valueOf(quickstartName.toUpperCase());
         if (quickstart != null) {
           schemaFilename = quickstart.getSchemaFilename();
           schemaKeyField = quickstart.getSchemaKeyField();
           try {
-            generator = new Generator(
-                getClass().getClassLoader().getResourceAsStream(schemaFilename),
-                new Random()
-            );
+            schemaEntry = SchemaCache.acquire(readFully(
+                getClass().getClassLoader().getResourceAsStream(schemaFilename)
+            ));
           } catch (IOException e) {
             throw new ConnectException("Unable to read the '"
                 + schemaFilename + "' schema file", e);
@@ -126,68 +167,228 @@ public class DatagenTask extends SourceTask {
       }
     } else {
       try {
-        generator = new Generator(
-            new FileInputStream(schemaFilename),
-            new Random()
-        );
+        schemaEntry = SchemaCache.acquire(readFully(new FileInputStream(schemaFilename)));
       } catch (IOException e) {
         throw new ConnectException("Unable to read the '"
             + schemaFilename + "' schema file", e);
       }
     }
 
-    avroSchema = generator.schema();
-    avroData = new AvroData(1);
-    ksqlSchema = avroData.toConnectSchema(avroSchema);
+    try {
+      startGenerating();
+    } catch (RuntimeException e) {
+      // A task that fails to start may never be stopped, so release the shared schema and close
+      // any threads started so far
+      stop();
+      throw e;
+    }
   }
 
-  @Override
-  public List<SourceRecord> poll() throws InterruptedException {
+  private void startGenerating() {
+    // Tasks with the same schema share the parsed schema, its plan and its conversion plan
+    avroSchema = schemaEntry.avroSchema();
+    GenerationPlan plan = schemaEntry.plan();
+    if (config.getTaskSharding()) {
+      plan = plan.shard(config.getTaskId(), config.getTaskCount(), schemaKeyField);
+    }
+
+    // Everything a record depends on is derived from its index, so the index is all we need to
+    // pick up where a previous run of this task left off, except for the iterations the plan
+    // cannot advance exactly
+    Map<String, Object> partition = new HashMap<>();
+    partition.put(TASK_ID_FIELD, config.getTaskId());
+    partition.put(TASK_COUNT_FIELD, config.getTaskCount());
+    sourcePartition = partition;
+    final GenerationPlan initialPlan = plan;
+    count = readPosition();
+    if (count > 0) {
+      log.info("Resuming task {} of {} at message {}",
+               config.getTaskId(), config.getTaskCount(), count);
+      plan = plan.advance(count);
+    }
+
+    nativeEngine = DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE.equals(
+        config.getGeneratorEngine());
+    final boolean serializeValues = !DatagenConnectorConfig.VALUE_FORMAT_CONNECT.equals(
+        config.getValueFormat());
+    // Estimating the size of a Connect value walks all of it, so only do so for every record when
+    // the size is needed, or when it is cheap because the pool keeps the sizes or the values are
+    // bytes. Otherwise a sample of the records is enough for the metrics
+    estimateEveryRecord = batchMaxBytes > 0 || byteRateLimiter != null
+                          || config.getPoolSize() > 0 || serializeValues;
+    if (DatagenConnectorConfig.VALUE_FORMAT_CONFLUENT_AVRO.equals(config.getValueFormat())) {
+      valueSchemaId = resolveValueSchemaId();
+    }
+    if (nativeEngine && serializeValues) {
+      log.warn("Serialized {} values are generated with the {} generator engine",
+               config.getValueFormat(), DatagenConnectorConfig.GENERATOR_ENGINE_AVRO);
+      nativeEngine = false;
+    }
+
+    // Lanes only generate the same records as a single thread if the plan splits evenly
+    final int lanes = Math.max(config.getPipelineThreads(), config.getGeneratorThreads());
+    final List<String> unevenIterations = config.getPoolSize() > 0
+                                          ? Collections.<String>emptyList()
+                                          : plan.unevenIterations(lanes);
+    if (!unevenIterations.isEmpty()) {
+      log.warn("Iterations of {} cannot be split between {} threads, so each task generates its "
+               + "messages on a single thread", unevenIterations, lanes);
+    }
+    final boolean split = unevenIterations.isEmpty();
+    final int pipelineThreads = split ? config.getPipelineThreads()
+                                      : Math.min(config.getPipelineThreads(), 1);
+    final int generatorThreads = split ? config.getGeneratorThreads() : 1;
+    deltaTemplates = null;
+    if (!config.getDeltaFields().isEmpty()) {
+      // Like the pool, the templates are the first records of the plan, shared by every lane so
+      // that neither the number of threads nor a resume changes them
+      deltaTemplates = newRecordGenerator(initialPlan).templates(config.getDeltaTemplates());
+    }
+    if (config.getPoolSize() > 0) {
+      // The pool always holds the first records of the plan, so a resumed task replays the same
+      // records at the same indexes
+      recordPool = new RecordPool(newRecordGenerator(initialPlan), config.getPoolSize(),
+                                  config.getPoolRewrite());
+      log.info("Replaying a pool of {} messages", recordPool.size());
+    } else if (pipelineThreads > 0) {
+      final GenerationPlan taskPlan = plan;
+      final long limit = maxRecords > 0 ? maxRecords : -1L;
+      pipeline = new GenerationPipeline(
+          String.format("datagen-%s-task-%d", topic, config.getTaskId()),
+          pipelineThreads,
+          config.getPipelineBufferSize(),
+          count,
+          limit,
+          lane -> newRecordGenerator(taskPlan.interleave(lane, pipelineThreads))
+      );
+    } else if (generatorThreads > 1) {
+      final GenerationPlan taskPlan = plan;
+      batchGenerator = new ParallelBatchGenerator(
+          generatorThreads,
+          lane -> newRecordGenerator(
+              taskPlan.interleave((int) Math.floorMod(lane - count, (long) generatorThreads),
+                                  generatorThreads)
+          )
+      );
+    } else {
+      recordGenerator = newRecordGenerator(plan);
+    }
+    metrics.register();
+    flightRecorderEvents = FlightRecorderEvents.create(config.getJfrEventsEnabled());
+  }
 
-    if (maxInterval > 0) {
+  /**
+   * Create the generator of one lane. The first lane to find that the native engine does not
+   * support the schema switches the task to the Avro engine, before any other lane is created.
+   */
+  private RecordGenerator newRecordGenerator(GenerationPlan plan) {
+    if (nativeEngine) {
       try {
-        Thread.sleep((long) (maxInterval * Math.random()));
-      } catch (InterruptedException e) {
-        Thread.interrupted();
-        return null;
+        return newRecordGenerator(plan, true);
+      } catch (IllegalArgumentException e) {
+        log.warn("Falling back to the {} generator engine: {}",
+                 DatagenConnectorConfig.GENERATOR_ENGINE_AVRO, e.getMessage());
+        nativeEngine = false;
       }
     }
+    return newRecordGenerator(plan, false);
+  }
+
+  /**
+   * The generator engine the task ended up with, which is the Avro engine whenever the native
+   * one does not support the schema or the value format.
+   */
+  String generatorEngine() {
+    return nativeEngine
+           ? DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE
+           : DatagenConnectorConfig.GENERATOR_ENGINE_AVRO;
+  }
 
-    final Object generatedObject = generator.generate();
-    if (!(generatedObject instanceof GenericRecord)) {
-      throw new RuntimeException(String.format(
-          "Expected Avro Random Generator to return instance of GenericRecord, found %s instead",
-          generatedObject.getClass().getName()
-      ));
+  private RecordGenerator newRecordGenerator(GenerationPlan plan, boolean nativeEngine) {
+    final Random random;
+    if (config.getGeneratorSeed() != null) {
+      random = new CounterRandom(config.getGeneratorSeed(), config.getTaskId());
+    } else {
+      random = new Random();
+    }
+    ValueEncoder valueEncoder = null;
+    if (!DatagenConnectorConfig.VALUE_FORMAT_CONNECT.equals(config.getValueFormat())) {
+      valueEncoder = new ValueEncoder(config.getValueFormat(), avroSchema, valueSchemaId);
     }
-    final GenericRecord randomAvroMessage = (GenericRecord) generatedObject;
+    return new RecordGenerator(plan, schemaEntry.conversionPlan(), schemaKeyField,
+                               topic, sourcePartition, random, nativeEngine, valueEncoder,
+                               config.getDeltaFields(), deltaTemplates, metrics);
+  }
 
-    final List<Object> genericRowValues = new ArrayList<>();
-    for (org.apache.avro.Schema.Field field : avroSchema.getFields()) {
-      final Object value = randomAvroMessage.get(field.name());
-      if (value instanceof Record) {
-        final Record record = (Record) value;
-        final Object ksqlValue = avroData.toConnectData(record.getSchema(), record).value();
-        Object optionValue = getOptionalValue(ksqlSchema.field(field.name()).schema(), ksqlValue);
-        genericRowValues.add(optionValue);
-      } else {
-        genericRowValues.add(value);
+  private int resolveValueSchemaId() {
+    if (config.getValueSchemaId() >= 0) {
+      return config.getValueSchemaId();
+    }
+    final String registryUrl = config.getValueSchemaRegistryUrl();
+    if (registryUrl.isEmpty()) {
+      final int localId = SchemaRegistration.localId(avroSchema);
+      log.warn("Writing values with the locally computed schema ID {}, which deserializers will "
+               + "not be able to look up. Set {} or {} to use a registered schema",
+               localId, DatagenConnectorConfig.VALUE_SCHEMA_ID_CONF,
+               DatagenConnectorConfig.VALUE_SCHEMA_REGISTRY_URL_CONF);
+      return localId;
+    }
+    String subject = config.getValueSchemaSubject();
+    if (subject.isEmpty()) {
+      subject = topic + "-value";
+    }
+    final int registeredId = SchemaRegistration.register(registryUrl, subject, avroSchema);
+    log.info("Registered the value schema under subject '{}' with ID {}", subject, registeredId);
+    return registeredId;
+  }
+
+  /**
+   * Read a stream to its end as UTF-8 text, closing it.
+   */
+  static String readFully(InputStream in) throws IOException {
+    try (InputStream stream = in) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
       }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
     }
+  }
 
-    // Key
-    String keyString = "";
-    if (!schemaKeyField.isEmpty()) {
-      SchemaAndValue schemaAndValue = avroData.toConnectData(
-          randomAvroMessage.getSchema().getField(schemaKeyField).schema(),
-          randomAvroMessage.get(schemaKeyField)
-      );
-      keyString = schemaAndValue.value().toString();
+  private long readPosition() {
+    if (context == null) {
+      return 0L;
+    }
+    final Map<String, Object> offset = context.offsetStorageReader().offset(sourcePartition);
+    if (offset == null || !(offset.get(POSITION_FIELD) instanceof Number)) {
+      return 0L;
     }
+    return ((Number) offset.get(POSITION_FIELD)).longValue();
+  }
+
+  @Override
+  public List<SourceRecord> poll() throws InterruptedException {
+    final long pollStart = System.nanoTime();
+    metrics.pollStarted(pollStart);
+    final Object batchEvent = flightRecorderEvents.begin();
+    final long convertStart = batchEvent != null ? metrics.convertNanos() : 0L;
+    long sleepNanos = 0L;
 
-    // Value
-    final org.apache.kafka.connect.data.Schema messageSchema = avroData.toConnectSchema(avroSchema);
-    final Object messageValue = avroData.toConnectData(avroSchema, randomAvroMessage).value();
+    final boolean throttled = recordRateLimiter != null || byteRateLimiter != null;
+    if (maxInterval > 0 && !throttled) {
+      try {
+        Thread.sleep((long) (maxInterval * Math.random()));
+      } catch (InterruptedException e) {
+        Thread.interrupted();
+        metrics.pollFinished(System.nanoTime());
+        return null;
+      } finally {
+        sleepNanos = System.nanoTime() - pollStart;
+        metrics.recordSleep(sleepNanos);
+      }
+    }
 
     if (maxRecords > 0 && count >= maxRecords) {
       throw new ConnectException(
@@ -195,98 +396,141 @@ public class DatagenTask extends SourceTask {
       );
     }
 
-    final List<SourceRecord> records = new ArrayList<>();
-    SourceRecord record = new SourceRecord(
-        SOURCE_PARTITION,
-        SOURCE_OFFSET,
-        topic,
-        KEY_SCHEMA,
-        keyString,
-        messageSchema,
-        messageValue
-    );
-    records.add(record);
+    // Never hand out more than the remaining iterations, so the limit is hit exactly
+    int recordsToGenerate = batchSize;
+    if (maxRecords > 0) {
+      recordsToGenerate = (int) Math.min(recordsToGenerate, maxRecords - count);
+    }
+    if (rateController != null) {
+      if (rateController.adjust(System.nanoTime())) {
+        metrics.targetRecordsPerSec((long) rateController.rate());
+      }
+      final long room = rateController.room();
+      if (room == 0) {
+        // Wait for acknowledgements rather than add to the worker's backlog
+        final long pauseStart = System.nanoTime();
+        RateLimiter.sleepNanos(AdaptiveRateController.FULL_PAUSE_NANOS);
+        metrics.recordSleep(System.nanoTime() - pauseStart);
+        Thread.interrupted();
+        metrics.pollFinished(System.nanoTime());
+        return null;
+      }
+      recordsToGenerate = (int) Math.min(recordsToGenerate, room);
+    }
+
+    final long generateStart = System.nanoTime();
+    long recordStart = generateStart;
+    final List<SourceRecord> records = new ArrayList<>(recordsToGenerate);
+    long batchBytes = 0L;
+    // Records of the generator threads are made ahead of time, so only the wait for them counts
+    final boolean handedOver = pipeline != null || batchGenerator != null;
+    while (records.size() < recordsToGenerate) {
+      final long recordIndex = count + records.size();
+      final SourceRecord record;
+      if (recordPool != null) {
+        record = recordPool.next(recordIndex);
+      } else if (pipeline != null) {
+        // Only wait for the generator threads if there is nothing to hand out yet
+        record = pipeline.next(records.isEmpty());
+        if (record == null) {
+          break;
+        }
+      } else if (batchGenerator != null) {
+        record = batchGenerator.next(recordIndex, recordsToGenerate - records.size());
+      } else {
+        record = recordGenerator.generate(recordIndex);
+      }
+      records.add(record);
+      if (estimateEveryRecord) {
+        batchBytes += recordPool != null ? recordPool.estimate(record, recordIndex)
+                                         : SizeEstimator.estimate(record);
+      } else if (recordIndex % BYTES_SAMPLE_INTERVAL == 0) {
+        batchBytes += BYTES_SAMPLE_INTERVAL * SizeEstimator.estimate(record);
+      }
+      final long recordEnd = System.nanoTime();
+      metrics.recordGeneration(recordEnd - recordStart, handedOver);
+      recordStart = recordEnd;
+      if (batchMaxBytes > 0 && batchBytes >= batchMaxBytes) {
+        break;
+      }
+    }
     count += records.size();
+    metrics.recordBatch(records.size(), batchBytes, recordStart - generateStart);
+
+    if (throttled) {
+      long delayNanos = 0L;
+      // The batch is due when the later of the two schedules allows it
+      long dueNanos = Long.MIN_VALUE;
+      double recordIntervalNanos = 0.0;
+      if (recordRateLimiter != null) {
+        delayNanos = recordRateLimiter.reserve(records.size());
+        dueNanos = recordRateLimiter.lastDueNanos();
+        recordIntervalNanos = recordRateLimiter.nanosPerPermit();
+      }
+      if (byteRateLimiter != null) {
+        delayNanos = Math.max(delayNanos, byteRateLimiter.reserve(batchBytes));
+        if (byteRateLimiter.lastDueNanos() > dueNanos) {
+          dueNanos = byteRateLimiter.lastDueNanos();
+          recordIntervalNanos = byteRateLimiter.nanosPerPermit() * batchBytes
+                                / Math.max(1, records.size());
+        }
+      }
+      final long sleepStart = System.nanoTime();
+      RateLimiter.sleepNanos(delayNanos);
+      final long sleepEnd = System.nanoTime();
+      sleepNanos += sleepEnd - sleepStart;
+      metrics.recordSleep(sleepEnd - sleepStart);
+      metrics.recordLateness(sleepEnd - dueNanos, recordIntervalNanos, records.size());
+      // The batch has already been generated and counted, so hand it out even if interrupted
+      Thread.interrupted();
+    }
+    if (batchEvent != null) {
+      flightRecorderEvents.commit(batchEvent, avroSchema.getFullName(), records.size(),
+                                  batchBytes, recordStart - generateStart,
+                                  metrics.convertNanos() - convertStart, sleepNanos);
+    }
+    // Stamped once the batch is ready, so throttling sleeps do not count towards ack latency
+    final long sentNanos = System.nanoTime();
+    for (SourceRecord record : records) {
+      metrics.recordSent(position(record), sentNanos);
+    }
+    metrics.pollFinished(sentNanos);
     return records;
   }
 
+  /**
+   * Called once Kafka acknowledged the record, or the worker dropped it, on the producer's
+   * callback thread.
+   */
   @Override
-  public void stop() {
+  public void commitRecord(SourceRecord record) {
+    final long position = position(record);
+    if (position >= 0) {
+      metrics.recordAck(position, System.nanoTime());
+    }
   }
 
-  private org.apache.kafka.connect.data.Schema getOptionalSchema(
-      final org.apache.kafka.connect.data.Schema schema
-  ) {
-    switch (schema.type()) {
-      case BOOLEAN:
-        return org.apache.kafka.connect.data.Schema.OPTIONAL_BOOLEAN_SCHEMA;
-      case INT32:
-        return org.apache.kafka.connect.data.Schema.OPTIONAL_INT32_SCHEMA;
-      case INT64:
-        return org.apache.kafka.connect.data.Schema.OPTIONAL_INT64_SCHEMA;
-      case FLOAT64:
-        return org.apache.kafka.connect.data.Schema.OPTIONAL_FLOAT64_SCHEMA;
-      case STRING:
-        return org.apache.kafka.connect.data.Schema.OPTIONAL_STRING_SCHEMA;
-      case ARRAY:
-        return SchemaBuilder.array(getOptionalSchema(schema.valueSchema())).optional().build();
-      case MAP:
-        return SchemaBuilder.map(
-            getOptionalSchema(schema.keySchema()),
-            getOptionalSchema(schema.valueSchema())
-        ).optional().build();
-      case STRUCT:
-        final SchemaBuilder schemaBuilder = SchemaBuilder.struct();
-        for (Field field : schema.fields()) {
-          schemaBuilder.field(
-              field.name(),
-              getOptionalSchema(field.schema())
-          );
-        }
-        return schemaBuilder.optional().build();
-      default:
-        throw new ConnectException("Unsupported type: " + schema);
-    }
+  private static long position(SourceRecord record) {
+    final Object position = record.sourceOffset().get(POSITION_FIELD);
+    return position instanceof Number ? ((Number) position).longValue() : -1L;
   }
 
-  private Object getOptionalValue(
-      final org.apache.kafka.connect.data.Schema schema,
-      final Object value
-  ) {
-    switch (schema.type()) {
-      case BOOLEAN:
-      case INT32:
-      case INT64:
-      case FLOAT64:
-      case STRING:
-        return value;
-      case ARRAY:
-        final List<?> list = (List<?>) value;
-        return list.stream()
-                   .map(listItem -> getOptionalValue(schema.valueSchema(), listItem))
-                   .collect(Collectors.toList());
-      case MAP:
-        final Map<?, ?> map = (Map<?, ?>) value;
-        return map.entrySet().stream()
-            .collect(Collectors.toMap(
-                k -> getOptionalValue(schema.keySchema(), k),
-                v -> getOptionalValue(schema.valueSchema(), v)
-            ));
-      case STRUCT:
-        final Struct struct = (Struct) value;
-        final Struct optionalStruct = new Struct(getOptionalSchema(schema));
-        for (Field field : schema.fields()) {
-          optionalStruct.put(
-              field.name(),
-              getOptionalValue(
-                  field.schema(),
-                  struct.get(field.name())
-              )
-          );
-        }
-        return optionalStruct;
-      default:
-        throw new ConnectException("Invalid value schema: " + schema + ", value = " + value);
+  @Override
+  public void stop() {
+    if (metrics != null) {
+      metrics.unregister();
+    }
+    if (pipeline != null) {
+      pipeline.close();
+      pipeline = null;
+    }
+    if (batchGenerator != null) {
+      batchGenerator.close();
+      batchGenerator = null;
+    }
+    if (schemaEntry != null) {
+      SchemaCache.release(schemaEntry);
+      schemaEntry = null;
     }
   }
 }
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Map;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigDef.Range;
+import org.apache.kafka.common.config.ConfigDef.Type;
+
+/**
+ * Configuration for a single task. The connector fills in the task's index and the total number
+ * of tasks and the schema it already loaded, and replaces the global iteration and throughput
+ * settings with this task's share.
+ */
+public class DatagenTaskConfig extends DatagenConnectorConfig {
+
+  public static final String TASK_ID_CONF = "task.id";
+  private static final String TASK_ID_DOC = "Index of this task, assigned by the connector";
+  public static final String TASK_COUNT_CONF = "task.count";
+  private static final String TASK_COUNT_DOC = "Total number of tasks, assigned by the connector";
+  public static final String TASK_SCHEMA_CONF = "task.schema";
+  private static final String TASK_SCHEMA_DOC = "Schema loaded and validated by the connector, "
+                                                + "used instead of the quickstart or schema file";
+  public static final String TASK_SCHEMA_KEYFIELD_CONF = "task.schema.keyfield";
+  private static final String TASK_SCHEMA_KEYFIELD_DOC = "Key field of the connector's schema";
+
+  public DatagenTaskConfig(Map<String, String> parsedConfig) {
+    super(conf(), parsedConfig);
+  }
+
+  public static ConfigDef conf() {
+    return DatagenConnectorConfig.conf()
+        .define(TASK_ID_CONF, Type.INT, 0, Range.atLeast(0), Importance.LOW, TASK_ID_DOC)
+        .define(TASK_COUNT_CONF, Type.INT, 1, Range.atLeast(1), Importance.LOW, TASK_COUNT_DOC)
+        .define(TASK_SCHEMA_CONF, Type.STRING, "", Importance.LOW, TASK_SCHEMA_DOC)
+        .define(TASK_SCHEMA_KEYFIELD_CONF, Type.STRING, "", Importance.LOW,
+                TASK_SCHEMA_KEYFIELD_DOC);
+  }
+
+  public Integer getTaskId() {
+    return this.getInt(TASK_ID_CONF);
+  }
+
+  public Integer getTaskCount() {
+    return this.getInt(TASK_COUNT_CONF);
+  }
+
+  public String getTaskSchema() {
+    return this.getString(TASK_SCHEMA_CONF);
+  }
+
+  public String getTaskSchemaKeyfield() {
+    return this.getString(TASK_SCHEMA_KEYFIELD_CONF);
+  }
+
+}
@@ -0,0 +1,445 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the metrics of one task and exposes them over JMX. Counters are {@link LongAdder}s and
+ * batch sizes go into a {@link LatencyHistogram}, so generator threads can record without
+ * contending with each other or with JMX reads. Poll timings are only recorded by the task's own
+ * thread.
+ *
+ * <p>Generation latency is recorded with coordinated omission correction and schedule lateness
+ * against the due time of every record, and both are reported per interval: every {@code metrics.interval.ms} the task logs their percentiles,
+ * which JMX then shows until the next interval ends. Acknowledgement latency is reported the same
+ * way, but is recorded on the producer's callback thread.
+ */
+final class DatagenTaskMetrics implements DatagenTaskMetricsMBean {
+
+  private static final Logger log = LoggerFactory.getLogger(DatagenTaskMetrics.class);
+
+  static final String DOMAIN = DatagenTaskMetrics.class.getPackage().getName();
+  static final String TYPE = "task-metrics";
+
+  // Rates are sampled at most once per window, however often they are read
+  private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // Enough for the records of a few producer batches in flight, in 1MB of stamps
+  static final int ACK_TRACKING_CAPACITY = 1 << 16;
+  // The instance registered under each name, which alone may unregister it
+  private static final Map<ObjectName, DatagenTaskMetrics> REGISTERED = new HashMap<>();
+
+  private final String connectorName;
+  private final int taskId;
+  private final long targetBytesPerSec;
+  private volatile long targetRecordsPerSec;
+  private volatile long expectedIntervalNanos;
+  private final long reportIntervalNanos;
+  private final LongSupplier nanoClock;
+  private final LongAdder records = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder polls = new LongAdder();
+  private final LongAdder generateNanos = new LongAdder();
+  private final LongAdder convertNanos = new LongAdder();
+  private final LongAdder sleepNanos = new LongAdder();
+  private final LongAdder outsidePollNanos = new LongAdder();
+  private final LatencyHistogram batchSizes = new LatencyHistogram();
+  private final LatencyHistogram generateLatency = new LatencyHistogram();
+  private final LatencyHistogram scheduleLateness = new LatencyHistogram();
+  private final AckTracker acks = new AckTracker(ACK_TRACKING_CAPACITY);
+  private volatile LatencyHistogram reportedGenerateLatency = new LatencyHistogram();
+  private volatile LatencyHistogram reportedScheduleLateness = new LatencyHistogram();
+  private volatile LatencyHistogram reportedAckLatency = new LatencyHistogram();
+  private long lastReport;
+  private long lastPollEnd = -1L;
+  private long sampleNanos;
+  private long sampleRecords;
+  private long sampleBytes;
+  private double recordsPerSec;
+  private double bytesPerSec;
+  private ObjectName objectName;
+
+  DatagenTaskMetrics(
+      String connectorName, int taskId, long targetRecordsPerSec, long targetBytesPerSec,
+      long reportIntervalMs
+  ) {
+    this(connectorName, taskId, targetRecordsPerSec, targetBytesPerSec, reportIntervalMs,
+         System::nanoTime);
+  }
+
+  DatagenTaskMetrics(
+      String connectorName, int taskId, long targetRecordsPerSec, long targetBytesPerSec,
+      long reportIntervalMs, LongSupplier nanoClock
+  ) {
+    this.connectorName = connectorName;
+    this.taskId = taskId;
+    this.targetBytesPerSec = targetBytesPerSec;
+    targetRecordsPerSec(targetRecordsPerSec);
+    this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMs);
+    this.nanoClock = nanoClock;
+    this.sampleNanos = nanoClock.getAsLong();
+    this.lastReport = sampleNanos;
+  }
+
+  static ObjectName objectName(String connectorName, int taskId) throws JMException {
+    return new ObjectName(String.format("%s:type=%s,connector=%s,task=%d",
+                                        DOMAIN, TYPE, ObjectName.quote(connectorName), taskId));
+  }
+
+  /**
+   * Register with the platform MBean server, replacing the MBean of an earlier run of the same
+   * task that was never stopped. Metrics are not worth failing the task for, so errors are only
+   * logged.
+   */
+  void register() {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    synchronized (REGISTERED) {
+      try {
+        final ObjectName name = objectName(connectorName, taskId);
+        if (server.isRegistered(name)) {
+          server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+        REGISTERED.put(name, this);
+        objectName = name;
+      } catch (JMException e) {
+        log.warn("Unable to register the metrics of task {} of connector {}", taskId,
+                 connectorName, e);
+      }
+    }
+  }
+
+  /**
+   * Unregister from the platform MBean server, unless a later run of the same task has taken
+   * over the name since.
+   */
+  void unregister() {
+    if (objectName == null) {
+      return;
+    }
+    synchronized (REGISTERED) {
+      if (REGISTERED.remove(objectName, this)) {
+        try {
+          ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+          log.debug("Unable to unregister {}", objectName, e);
+        }
+      }
+    }
+    objectName = null;
+  }
+
+  /**
+   * Change the target record rate, which the adaptive rate mode does as it goes.
+   */
+  void targetRecordsPerSec(long recordsPerSec) {
+    this.targetRecordsPerSec = recordsPerSec;
+    // At the target rate a record is due every interval, so a slower record delays the next ones
+    this.expectedIntervalNanos = recordsPerSec > 0
+                                 ? TimeUnit.SECONDS.toNanos(1) / recordsPerSec : 0L;
+  }
+
+  AckTracker ackTracker() {
+    return acks;
+  }
+
+  void pollStarted(long nanos) {
+    if (lastPollEnd >= 0) {
+      outsidePollNanos.add(nanos - lastPollEnd);
+    }
+    polls.increment();
+  }
+
+  void pollFinished(long nanos) {
+    lastPollEnd = nanos;
+    if (nanos - lastReport >= reportIntervalNanos) {
+      report(nanos);
+    }
+  }
+
+  /**
+   * Record the time it took to produce one record.
+   *
+   * @param handedOver whether the record was generated ahead of time by another thread, in which
+   *                   case the time is only the wait for it. The wait for the first record of a
+   *                   batch then covers the others, so it is not corrected for the records it
+   *                   seemingly held up.
+   */
+  void recordGeneration(long nanos, boolean handedOver) {
+    if (handedOver) {
+      generateLatency.record(nanos);
+    } else {
+      generateLatency.recordCorrected(nanos, expectedIntervalNanos);
+    }
+  }
+
+  /**
+   * Record how long after its time on the throttling schedule every record of a batch was handed
+   * out. The records were due one interval after another, so the later ones were less late, and
+   * those that were not due yet count as on time.
+   *
+   * @param firstLatenessNanos how late the first record of the batch was
+   * @param recordIntervalNanos the time the schedule allots to each record of the batch
+   */
+  void recordLateness(long firstLatenessNanos, double recordIntervalNanos, int batchRecords) {
+    int late = 0;
+    while (late < batchRecords) {
+      final long lateness = firstLatenessNanos - (long) (late * recordIntervalNanos);
+      if (lateness <= 0) {
+        break;
+      }
+      scheduleLateness.record(lateness);
+      late++;
+    }
+    scheduleLateness.record(0L, batchRecords - late);
+  }
+
+  void recordBatch(int batchRecords, long batchBytes, long nanos) {
+    records.add(batchRecords);
+    bytes.add(batchBytes);
+    generateNanos.add(nanos);
+    batchSizes.record(batchRecords);
+  }
+
+  void recordConversion(long nanos) {
+    convertNanos.add(nanos);
+  }
+
+  void recordSleep(long nanos) {
+    sleepNanos.add(nanos);
+  }
+
+  /**
+   * Record that the record at {@code position} was handed to the worker at {@code nanos}.
+   */
+  void recordSent(long position, long nanos) {
+    acks.sent(position, nanos);
+  }
+
+  /**
+   * Record that Kafka acknowledged the record at {@code position} at {@code nanos}. Called on
+   * the producer's callback thread.
+   */
+  void recordAck(long position, long nanos) {
+    acks.acked(position, nanos);
+  }
+
+  /**
+   * The nanoseconds spent converting so far, on any thread.
+   */
+  long convertNanos() {
+    return convertNanos.sum();
+  }
+
+  @Override
+  public long getRecordsGenerated() {
+    return records.sum();
+  }
+
+  @Override
+  public long getBytesGenerated() {
+    return bytes.sum();
+  }
+
+  @Override
+  public long getPolls() {
+    return polls.sum();
+  }
+
+  @Override
+  public long getGenerateTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(generateNanos.sum());
+  }
+
+  @Override
+  public long getConvertTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(convertNanos.sum());
+  }
+
+  @Override
+  public long getSleepTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(sleepNanos.sum());
+  }
+
+  @Override
+  public long getOutsidePollTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(outsidePollNanos.sum());
+  }
+
+  @Override
+  public synchronized double getRecordsPerSec() {
+    sampleRates();
+    return recordsPerSec;
+  }
+
+  @Override
+  public synchronized double getBytesPerSec() {
+    sampleRates();
+    return bytesPerSec;
+  }
+
+  @Override
+  public long getTargetRecordsPerSec() {
+    return targetRecordsPerSec;
+  }
+
+  @Override
+  public long getTargetBytesPerSec() {
+    return targetBytesPerSec;
+  }
+
+  @Override
+  public long getBatchSizeP50() {
+    return batchSizes.percentile(50.0);
+  }
+
+  @Override
+  public long getBatchSizeP99() {
+    return batchSizes.percentile(99.0);
+  }
+
+  @Override
+  public long getBatchSizeMax() {
+    return batchSizes.max();
+  }
+
+  @Override
+  public long getGenerateLatencyP50Us() {
+    return micros(reportedGenerateLatency.percentile(50.0));
+  }
+
+  @Override
+  public long getGenerateLatencyP99Us() {
+    return micros(reportedGenerateLatency.percentile(99.0));
+  }
+
+  @Override
+  public long getGenerateLatencyP999Us() {
+    return micros(reportedGenerateLatency.percentile(99.9));
+  }
+
+  @Override
+  public long getGenerateLatencyMaxUs() {
+    return micros(reportedGenerateLatency.max());
+  }
+
+  @Override
+  public long getScheduleLatenessP50Us() {
+    return micros(reportedScheduleLateness.percentile(50.0));
+  }
+
+  @Override
+  public long getScheduleLatenessP99Us() {
+    return micros(reportedScheduleLateness.percentile(99.0));
+  }
+
+  @Override
+  public long getScheduleLatenessP999Us() {
+    return micros(reportedScheduleLateness.percentile(99.9));
+  }
+
+  @Override
+  public long getScheduleLatenessMaxUs() {
+    return micros(reportedScheduleLateness.max());
+  }
+
+  @Override
+  public long getInFlightRecords() {
+    return acks.inFlight();
+  }
+
+  @Override
+  public long getAckedRecords() {
+    return acks.acked();
+  }
+
+  @Override
+  public long getUntimedAcks() {
+    return acks.untimed();
+  }
+
+  @Override
+  public long getAckLatencyP50Us() {
+    return micros(reportedAckLatency.percentile(50.0));
+  }
+
+  @Override
+  public long getAckLatencyP99Us() {
+    return micros(reportedAckLatency.percentile(99.0));
+  }
+
+  @Override
+  public long getAckLatencyP999Us() {
+    return micros(reportedAckLatency.percentile(99.9));
+  }
+
+  @Override
+  public long getAckLatencyMaxUs() {
+    return micros(reportedAckLatency.max());
+  }
+
+  private void report(long now) {
+    final LatencyHistogram generate = generateLatency.getAndReset();
+    final LatencyHistogram lateness = scheduleLateness.getAndReset();
+    final LatencyHistogram ack = acks.getAndResetLatency();
+    reportedGenerateLatency = generate;
+    reportedScheduleLateness = lateness;
+    reportedAckLatency = ack;
+    lastReport = now;
+    log.info("Task {} of connector {}: generate latency us p50={} p99={} p99.9={} max={}, "
+             + "schedule lateness us p50={} p99={} p99.9={} max={}, "
+             + "ack latency us p50={} p99={} p99.9={} max={}, {} records in flight",
+             taskId, connectorName,
+             micros(generate.percentile(50.0)), micros(generate.percentile(99.0)),
+             micros(generate.percentile(99.9)), micros(generate.max()),
+             micros(lateness.percentile(50.0)), micros(lateness.percentile(99.0)),
+             micros(lateness.percentile(99.9)), micros(lateness.max()),
+             micros(ack.percentile(50.0)), micros(ack.percentile(99.0)),
+             micros(ack.percentile(99.9)), micros(ack.max()), acks.inFlight());
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  private void sampleRates() {
+    final long now = nanoClock.getAsLong();
+    final long elapsed = now - sampleNanos;
+    if (elapsed < RATE_WINDOW_NANOS) {
+      return;
+    }
+    final long totalRecords = records.sum();
+    final long totalBytes = bytes.sum();
+    recordsPerSec = (totalRecords - sampleRecords) * 1e9 / elapsed;
+    bytesPerSec = (totalBytes - sampleBytes) * 1e9 / elapsed;
+    sampleNanos = now;
+    sampleRecords = totalRecords;
+    sampleBytes = totalBytes;
+  }
+}
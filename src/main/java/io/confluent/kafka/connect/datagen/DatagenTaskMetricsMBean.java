@@ -0,0 +1,137 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+/**
+ * Metrics of a running datagen task, registered with the platform MBean server as
+ * {@code io.confluent.kafka.connect.datagen:type=task-metrics,connector="<name>",task=<id>}.
+ * Counts and times are totals since the task started; times are in milliseconds. Latency
+ * percentiles are in microseconds and cover the last complete {@code metrics.interval.ms}.
+ */
+public interface DatagenTaskMetricsMBean {
+
+  long getRecordsGenerated();
+
+  /**
+   * The estimated size of the generated keys and values, as used for throttling. Every record is
+   * estimated when the task limits bytes, or when the size comes cheaply from a record pool or
+   * from serialized values. Otherwise only every 64th record is, and counts for all 64.
+   */
+  long getBytesGenerated();
+
+  long getPolls();
+
+  /**
+   * Time {@code poll()} spent producing batches, including the conversions on the task thread
+   * and waiting for background generator threads.
+   */
+  long getGenerateTimeMs();
+
+  /**
+   * Time spent converting generated Avro records to Connect values or serialized bytes, on
+   * whichever thread generates them. Zero for the native engine, which writes Connect values.
+   */
+  long getConvertTimeMs();
+
+  /**
+   * Time {@code poll()} spent sleeping, for {@code max.interval} or for throttling.
+   */
+  long getSleepTimeMs();
+
+  /**
+   * Time between polls, spent by the worker converting and sending the previous batch. A large
+   * share means the producer rather than the task is the bottleneck.
+   */
+  long getOutsidePollTimeMs();
+
+  /**
+   * The records generated per second over the last second or so.
+   */
+  double getRecordsPerSec();
+
+  /**
+   * The estimated bytes generated per second over the last second or so, see
+   * {@link #getBytesGenerated()}.
+   */
+  double getBytesPerSec();
+
+  /**
+   * This task's share of {@code throughput.records.per.sec}, or 0 if it is not throttled. With
+   * {@code rate.mode=adaptive}, the rate the task currently allows itself.
+   */
+  long getTargetRecordsPerSec();
+
+  /**
+   * This task's share of {@code throughput.bytes.per.sec}, or 0 if it is not throttled.
+   */
+  long getTargetBytesPerSec();
+
+  long getBatchSizeP50();
+
+  long getBatchSizeP99();
+
+  long getBatchSizeMax();
+
+  /**
+   * The time to produce each record, corrected for coordinated omission at the target rate: a
+   * record slower than the rate allows also counts for the records it held up.
+   */
+  long getGenerateLatencyP50Us();
+
+  long getGenerateLatencyP99Us();
+
+  long getGenerateLatencyP999Us();
+
+  long getGenerateLatencyMaxUs();
+
+  /**
+   * How long after their time on the throttling schedule records were handed out, for throttled
+   * tasks only. A task that sustains its rate stays close to zero.
+   */
+  long getScheduleLatenessP50Us();
+
+  long getScheduleLatenessP99Us();
+
+  long getScheduleLatenessP999Us();
+
+  long getScheduleLatenessMaxUs();
+
+  /**
+   * The records handed to the worker that Kafka has not acknowledged yet.
+   */
+  long getInFlightRecords();
+
+  long getAckedRecords();
+
+  /**
+   * Acknowledgements that were not timed, because too many records were in flight to remember
+   * when they had been handed out.
+   */
+  long getUntimedAcks();
+
+  /**
+   * The time from handing a record to the worker until Kafka acknowledged it, which covers
+   * conversion, transformations, producer batching and the broker's replication.
+   */
+  long getAckLatencyP50Us();
+
+  long getAckLatencyP99Us();
+
+  long getAckLatencyP999Us();
+
+  long getAckLatencyMaxUs();
+}
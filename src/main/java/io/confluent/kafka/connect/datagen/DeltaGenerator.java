@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+
+/**
+ * Derives values from a few template values by regenerating only their volatile fields. Every
+ * other field is copied by reference from the template, so nested structs, strings and the like
+ * are shared by all values derived from the same template and must not be modified.
+ *
+ * <p>Templates are either Connect {@link Struct}s or, for values serialized by the task, Avro
+ * {@link GenericRecord}s, and the field generators produce values of the same kind.
+ */
+class DeltaGenerator {
+
+  private final Object[] templates;
+  private final int[] positions;
+  private final double[] probabilities;
+  private final NativeGenerator.ValueGenerator[] generators;
+  private final Random random;
+
+  /**
+   * @param templates the values to derive from, all of the same kind and schema
+   * @param positions the positions of the volatile fields in the schema
+   * @param probabilities the probability each volatile field is regenerated with
+   * @param generators the generators of each volatile field's values
+   * @param random the source of the regeneration decisions
+   */
+  DeltaGenerator(
+      Object[] templates,
+      int[] positions,
+      double[] probabilities,
+      NativeGenerator.ValueGenerator[] generators,
+      Random random
+  ) {
+    this.templates = templates;
+    this.positions = positions;
+    this.probabilities = probabilities;
+    this.generators = generators;
+    this.random = random;
+  }
+
+  /**
+   * Derive the value with index {@code recordIndex} from template {@code recordIndex % size}.
+   */
+  Object generate(long recordIndex) {
+    final Object template = templates[(int) Math.floorMod(recordIndex, (long) templates.length)];
+    if (template instanceof Struct) {
+      final Struct source = (Struct) template;
+      final List<Field> fields = source.schema().fields();
+      final Struct value = new Struct(source.schema());
+      for (Field field : fields) {
+        value.put(field, source.get(field));
+      }
+      for (int i = 0; i < positions.length; i++) {
+        if (refresh(i)) {
+          value.put(fields.get(positions[i]), generators[i].generate());
+        }
+      }
+      return value;
+    }
+    final GenericRecord source = (GenericRecord) template;
+    final GenericData.Record value = new GenericData.Record(source.getSchema());
+    final int size = source.getSchema().getFields().size();
+    for (int i = 0; i < size; i++) {
+      value.put(i, source.get(i));
+    }
+    for (int i = 0; i < positions.length; i++) {
+      if (refresh(i)) {
+        value.put(positions[i], generators[i].generate());
+      }
+    }
+    return value;
+  }
+
+  private boolean refresh(int field) {
+    return probabilities[field] >= 1.0 || random.nextDouble() < probabilities[field];
+  }
+}
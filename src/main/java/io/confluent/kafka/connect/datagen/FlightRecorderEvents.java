@@ -0,0 +1,227 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits a JDK Flight Recorder event for every batch a task polls, with the batch's records,
+ * estimated bytes, schema and the nanoseconds spent generating, converting and sleeping, so
+ * that recordings show where the task spends its time.
+ *
+ * <p>The connector is built for Java 8, whose class library has no {@code jdk.jfr}, so the
+ * event type is defined with {@code jdk.jfr.EventFactory}, on JVMs that have it, and driven
+ * through method handles. It is defined once per JVM, when the first task enables events, and
+ * shared by every task. Unless {@code jfr.events.enabled} is set, or without Flight Recorder,
+ * {@link #begin()} returns null and nothing else happens.
+ */
+final class FlightRecorderEvents {
+
+  private static final Logger log = LoggerFactory.getLogger(FlightRecorderEvents.class);
+
+  static final String EVENT_NAME = "io.confluent.kafka.connect.datagen.PollBatch";
+  static final FlightRecorderEvents DISABLED = new FlightRecorderEvents(null);
+
+  // The event's fields, in the order of their indexes in set(int, Object)
+  private static final String[] FIELDS = {
+      "schema", "records", "bytes", "generateNanos", "convertNanos", "sleepNanos"
+  };
+
+  private final EventType type;
+  private volatile boolean failed;
+
+  private FlightRecorderEvents(EventType type) {
+    this.type = type;
+  }
+
+  /**
+   * The task's view of the shared event type, or {@link #DISABLED} if events are off or this
+   * JVM has no Flight Recorder.
+   */
+  static FlightRecorderEvents create(boolean enabled) {
+    if (!enabled || EventTypeHolder.TYPE == null) {
+      return DISABLED;
+    }
+    return new FlightRecorderEvents(EventTypeHolder.TYPE);
+  }
+
+  boolean isEnabled() {
+    return type != null && !failed;
+  }
+
+  /**
+   * Start timing the event of a batch.
+   *
+   * @return the event to pass to {@link #commit}, or null if events are disabled or no running
+   *         recording enables them
+   */
+  Object begin() {
+    if (!isEnabled()) {
+      return null;
+    }
+    try {
+      // Checked first, so that no event is allocated for every poll while nothing records
+      if (!(boolean) type.recorded.invokeExact()) {
+        return null;
+      }
+      final Object event = (Object) type.newEvent.invokeExact();
+      type.begin.invokeExact(event);
+      return event;
+    } catch (Throwable e) {
+      disable(e);
+      return null;
+    }
+  }
+
+  void commit(
+      Object event, String schema, long records, long bytes, long generateNanos,
+      long convertNanos, long sleepNanos
+  ) {
+    if (event == null) {
+      return;
+    }
+    try {
+      // False unless a recording has the event enabled
+      if (!(boolean) type.shouldCommit.invokeExact(event)) {
+        return;
+      }
+      type.set.invokeExact(event, 0, (Object) schema);
+      type.set.invokeExact(event, 1, (Object) records);
+      type.set.invokeExact(event, 2, (Object) bytes);
+      type.set.invokeExact(event, 3, (Object) generateNanos);
+      type.set.invokeExact(event, 4, (Object) convertNanos);
+      type.set.invokeExact(event, 5, (Object) sleepNanos);
+      type.commit.invokeExact(event);
+    } catch (Throwable e) {
+      disable(e);
+    }
+  }
+
+  private void disable(Throwable e) {
+    failed = true;
+    log.warn("Disabling Flight Recorder events after an error", e);
+  }
+
+  /**
+   * Defined on first use, so that JVMs without events enabled never touch {@code jdk.jfr}.
+   */
+  private static final class EventTypeHolder {
+    static final EventType TYPE = EventType.define();
+  }
+
+  /**
+   * The event type and the method handles driving its events, shared by every task. The handles
+   * are bound to the factory and typed with {@code Object} for the events, so they are invoked
+   * exactly.
+   */
+  private static final class EventType {
+    private final MethodHandle recorded;
+    private final MethodHandle newEvent;
+    private final MethodHandle begin;
+    private final MethodHandle shouldCommit;
+    private final MethodHandle set;
+    private final MethodHandle commit;
+
+    private EventType(
+        MethodHandle recorded, MethodHandle newEvent, MethodHandle begin,
+        MethodHandle shouldCommit, MethodHandle set, MethodHandle commit
+    ) {
+      this.recorded = recorded;
+      this.newEvent = newEvent;
+      this.begin = begin;
+      this.shouldCommit = shouldCommit;
+      this.set = set;
+      this.commit = commit;
+    }
+
+    /**
+     * Define the event type, or return null if this JVM has no Flight Recorder.
+     */
+    static EventType define() {
+      try {
+        final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+        final Object factory = factoryClass.getMethod("create", List.class, List.class).invoke(
+            null,
+            Arrays.asList(
+                annotation("jdk.jfr.Name", EVENT_NAME),
+                annotation("jdk.jfr.Label", "Datagen Poll Batch"),
+                annotation("jdk.jfr.Category", new String[] {"Kafka Connect", "Datagen"}),
+                annotation("jdk.jfr.Description", "A batch of records returned by a task's poll()")
+            ),
+            Arrays.asList(
+                field(String.class, FIELDS[0], "Schema", null, null),
+                field(long.class, FIELDS[1], "Records", null, null),
+                field(long.class, FIELDS[2], "Estimated Bytes", "jdk.jfr.DataAmount", "BYTES"),
+                field(long.class, FIELDS[3], "Generate Time", "jdk.jfr.Timespan", "NANOSECONDS"),
+                field(long.class, FIELDS[4], "Convert Time", "jdk.jfr.Timespan", "NANOSECONDS"),
+                field(long.class, FIELDS[5], "Sleep Time", "jdk.jfr.Timespan", "NANOSECONDS")
+            )
+        );
+        final Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final MethodType voidType = MethodType.methodType(void.class);
+        final MethodType onEvent = MethodType.methodType(void.class, Object.class);
+        return new EventType(
+            // True while a running recording has the event enabled
+            lookup.findVirtual(eventTypeClass, "isEnabled", MethodType.methodType(boolean.class))
+                .bindTo(eventType),
+            lookup.findVirtual(factoryClass, "newEvent", MethodType.methodType(eventClass))
+                .bindTo(factory)
+                .asType(MethodType.methodType(Object.class)),
+            lookup.findVirtual(eventClass, "begin", voidType).asType(onEvent),
+            lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class))
+                .asType(MethodType.methodType(boolean.class, Object.class)),
+            lookup.findVirtual(eventClass, "set",
+                               MethodType.methodType(void.class, int.class, Object.class))
+                .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class)),
+            lookup.findVirtual(eventClass, "commit", voidType).asType(onEvent)
+        );
+      } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+        log.warn("Flight Recorder events are enabled, but this JVM cannot define them", e);
+        return null;
+      }
+    }
+  }
+
+  private static Object annotation(String type, Object value) throws ReflectiveOperationException {
+    final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+    final Constructor<?> constructor = annotationElement.getConstructor(Class.class, Object.class);
+    return constructor.newInstance(Class.forName(type), value);
+  }
+
+  private static Object field(
+      Class<?> type, String name, String label, String unitType, String unit
+  ) throws ReflectiveOperationException {
+    final List<Object> annotations = unitType == null
+        ? Collections.singletonList(annotation("jdk.jfr.Label", label))
+        : Arrays.asList(annotation("jdk.jfr.Label", label), annotation(unitType, unit));
+    return Class.forName("jdk.jfr.ValueDescriptor")
+        .getConstructor(Class.class, String.class, List.class)
+        .newInstance(type, name, annotations);
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a task's records on dedicated threads, so that the task's poll only has to hand out
+ * records that are already converted.
+ *
+ * <p>Each of the {@code lanes} threads owns one {@link SpscRingBuffer} and generates every
+ * {@code lanes}-th record, starting from its lane number. The consumer drains the buffers
+ * round-robin, so records are handed out in exactly the same order as if they had been generated
+ * on a single thread. The buffer size bounds the memory used by records waiting to be polled.
+ */
+class GenerationPipeline implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(GenerationPipeline.class);
+
+  static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long CLOSE_TIMEOUT_MS = 1000L;
+
+  private final int lanes;
+  private final long firstIndex;
+  private final List<SpscRingBuffer<SourceRecord>> buffers;
+  private final List<Thread> threads;
+  private volatile boolean closed;
+  private volatile Throwable failure;
+  private long nextIndex;
+
+  /**
+   * @param name        prefix for the names of the generator threads
+   * @param lanes       number of generator threads
+   * @param bufferSize  capacity of each thread's buffer
+   * @param firstIndex  index of the first record to generate
+   * @param limit       index at which to stop generating, or less than 0 for unlimited
+   * @param generators  creates the generator for each lane; it is called on the current thread
+   */
+  GenerationPipeline(
+      String name,
+      int lanes,
+      int bufferSize,
+      long firstIndex,
+      long limit,
+      IntFunction<RecordGenerator> generators
+  ) {
+    this.lanes = lanes;
+    this.firstIndex = firstIndex;
+    this.nextIndex = firstIndex;
+    this.buffers = new ArrayList<>(lanes);
+    this.threads = new ArrayList<>(lanes);
+    for (int lane = 0; lane < lanes; lane++) {
+      final SpscRingBuffer<SourceRecord> buffer = new SpscRingBuffer<>(bufferSize);
+      final RecordGenerator generator = generators.apply(lane);
+      final long laneStart = firstIndex + lane;
+      final Thread thread = new Thread(
+          () -> generate(generator, buffer, laneStart, limit),
+          name + "-generator-" + lane
+      );
+      thread.setDaemon(true);
+      thread.setUncaughtExceptionHandler((t, e) -> {
+        log.error("Generator thread {} failed", t.getName(), e);
+        failure = e;
+      });
+      buffers.add(buffer);
+      threads.add(thread);
+    }
+    threads.forEach(Thread::start);
+  }
+
+  private void generate(
+      RecordGenerator generator,
+      SpscRingBuffer<SourceRecord> buffer,
+      long laneStart,
+      long limit
+  ) {
+    for (long index = laneStart; (limit < 0 || index < limit) && !closed; index += lanes) {
+      final SourceRecord record = generator.generate(index);
+      while (!buffer.offer(record)) {
+        if (closed) {
+          return;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  /**
+   * Take the next record in order.
+   *
+   * @param wait whether to wait up to {@link #MAX_WAIT_NANOS} for the record to be generated
+   * @return the record, or null if it is not ready yet
+   */
+  SourceRecord next(boolean wait) {
+    final SpscRingBuffer<SourceRecord> buffer =
+        buffers.get((int) ((nextIndex - firstIndex) % lanes));
+    final long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+    SourceRecord record = buffer.poll();
+    while (record == null) {
+      final Throwable error = failure;
+      if (error != null) {
+        throw new ConnectException("Unable to generate records in the background", error);
+      }
+      if (!wait || System.nanoTime() - deadline >= 0) {
+        return null;
+      }
+      LockSupport.parkNanos(IDLE_PARK_NANOS);
+      record = buffer.poll();
+    }
+    nextIndex++;
+    return record;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (Thread thread : threads) {
+      try {
+        thread.join(CLOSE_TIMEOUT_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+}
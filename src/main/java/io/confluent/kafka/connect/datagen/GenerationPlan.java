@@ -0,0 +1,382 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The annotated Avro Random Generator schema a task generates records from.
+ *
+ * <p>Plans are immutable; every transformation rewrites the {@code arg.properties} annotations of
+ * a copy of the schema, so the result can be handed to an ordinary {@code Generator}.
+ */
+class GenerationPlan {
+
+  private static final Logger log = LoggerFactory.getLogger(GenerationPlan.class);
+
+  static final String ARG_PROPERTIES_PROP = "arg.properties";
+  static final String ITERATION_PROP = "iteration";
+  static final String ITERATION_START_PROP = "start";
+  static final String ITERATION_RESTART_PROP = "restart";
+  static final String ITERATION_STEP_PROP = "step";
+  static final String RANGE_PROP = "range";
+  static final String RANGE_MIN_PROP = "min";
+  static final String RANGE_MAX_PROP = "max";
+  static final String OPTIONS_PROP = "options";
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private final String schemaJson;
+  private final Schema schema;
+
+  private GenerationPlan(String schemaJson) {
+    this(schemaJson, new Schema.Parser().parse(schemaJson));
+  }
+
+  private GenerationPlan(String schemaJson, Schema schema) {
+    this.schemaJson = schemaJson;
+    this.schema = schema;
+  }
+
+  static GenerationPlan of(Schema schema) {
+    return new GenerationPlan(schema.toString(), schema);
+  }
+
+  Schema schema() {
+    return schema;
+  }
+
+  String toJson() {
+    return schemaJson;
+  }
+
+  /**
+   * Restrict the plan to one task's share of the data. Iteration fields of task {@code taskId}
+   * out of {@code taskCount} start at {@code start + taskId * step} and advance by
+   * {@code taskCount * step}, and the key field draws from a slice of its range or options that
+   * no other task uses. Iterations with a {@code restart} bound are only disjoint until they
+   * first wrap around, unless their period is a multiple of {@code taskCount} values.
+   */
+  GenerationPlan shard(int taskId, int taskCount, String keyField) {
+    if (taskCount <= 1) {
+      return this;
+    }
+    final ObjectNode root = readTree();
+    forEachIteration(root, (path, iteration, nested) ->
+        strideIteration(iteration, taskId, taskCount));
+    if (!keyField.isEmpty()) {
+      sliceKeyField(root, keyField, taskId, taskCount);
+    }
+    return new GenerationPlan(writeTree(root));
+  }
+
+  /**
+   * Split the iteration sequences into {@code lanes} interleaved sequences and keep lane
+   * {@code lane}, so that the plan generates every {@code lanes}-th record starting with record
+   * {@code lane}. Unlike {@link #shard(int, int, String)}, the key field is left untouched. The
+   * lanes only generate the same records as this plan if {@link #unevenIterations(int)} is empty.
+   */
+  GenerationPlan interleave(int lane, int lanes) {
+    if (lanes <= 1) {
+      return this;
+    }
+    final ObjectNode root = readTree();
+    forEachIteration(root, (path, iteration, nested) -> strideIteration(iteration, lane, lanes));
+    return new GenerationPlan(writeTree(root));
+  }
+
+  /**
+   * Move every iteration field forward as if {@code records} records had already been generated
+   * from this plan. This is only exact for iterations that advance once per record and never
+   * wrap around: an advanced {@code restart} iteration would wrap to its advanced position rather
+   * than its start, and iterations inside arrays, maps or unions advance any number of times per
+   * record. Those iterations start over from their first value instead, with a warning.
+   */
+  GenerationPlan advance(long records) {
+    if (records == 0) {
+      return this;
+    }
+    final ObjectNode root = readTree();
+    final List<String> restarted = new ArrayList<>();
+    forEachIteration(root, (path, iteration, nested) -> {
+      if (nested || iteration.has(ITERATION_RESTART_PROP)) {
+        restarted.add(path);
+      } else {
+        advanceIteration(iteration, records);
+      }
+    });
+    if (!restarted.isEmpty()) {
+      log.warn("Iterations of {} cannot be resumed exactly at message {}, so they start over "
+               + "from their first value", restarted, records);
+    }
+    return new GenerationPlan(writeTree(root));
+  }
+
+  /**
+   * The paths of the iterations that {@link #interleave(int, int)} cannot split exactly into
+   * {@code lanes} lanes: those inside arrays, maps or unions, which do not advance once per
+   * record, and those whose {@code restart} period is not a multiple of {@code lanes} values,
+   * since every lane would wrap around to its own start.
+   */
+  List<String> unevenIterations(int lanes) {
+    final List<String> uneven = new ArrayList<>();
+    if (lanes > 1) {
+      forEachIteration(readTree(), (path, iteration, nested) -> {
+        if (nested || !splitsEvenly(iteration, lanes)) {
+          uneven.add(path);
+        }
+      });
+    }
+    return uneven;
+  }
+
+  /**
+   * Whether any part of {@code schema}, such as the schema of a single field, has an iteration.
+   */
+  static boolean hasIterations(Schema schema) {
+    final List<String> paths = new ArrayList<>();
+    try {
+      forEachIteration(JSON.readTree(schema.toString()),
+                       (path, iteration, nested) -> paths.add(path));
+    } catch (IOException e) {
+      throw new ConnectException("Unable to read the generation schema", e);
+    }
+    return !paths.isEmpty();
+  }
+
+  private ObjectNode readTree() {
+    try {
+      return (ObjectNode) JSON.readTree(schemaJson);
+    } catch (IOException | ClassCastException e) {
+      throw new ConnectException("Unable to rewrite the generation schema", e);
+    }
+  }
+
+  private static String writeTree(JsonNode root) {
+    try {
+      return JSON.writeValueAsString(root);
+    } catch (IOException e) {
+      throw new ConnectException("Unable to rewrite the generation schema", e);
+    }
+  }
+
+  /**
+   * Called with the dotted field path of every iteration, and whether it is nested in an array, a
+   * map or a union, where it does not advance exactly once per record.
+   */
+  private interface IterationVisitor {
+    void visit(String path, ObjectNode iteration, boolean nested);
+  }
+
+  private static void forEachIteration(JsonNode root, IterationVisitor visitor) {
+    forEachIteration(root, "", false, visitor);
+  }
+
+  private static void forEachIteration(
+      JsonNode node, String path, boolean nested, IterationVisitor visitor
+  ) {
+    if (node.isObject()) {
+      final JsonNode iteration = node.path(ARG_PROPERTIES_PROP).path(ITERATION_PROP);
+      if (iteration.isObject() && iteration.path(ITERATION_START_PROP).isNumber()) {
+        visitor.visit(path, (ObjectNode) iteration, nested);
+      }
+      final Iterator<Map.Entry<String, JsonNode>> fields = node.getFields();
+      while (fields.hasNext()) {
+        final Map.Entry<String, JsonNode> field = fields.next();
+        final String key = field.getKey();
+        final JsonNode value = field.getValue();
+        if (ARG_PROPERTIES_PROP.equals(key)) {
+          // Option values can look like schemas, so never descend into the annotations themselves
+          continue;
+        } else if ("fields".equals(key)) {
+          for (JsonNode recordField : value) {
+            final String name = recordField.path("name").asText();
+            forEachIteration(recordField, path.isEmpty() ? name : path + "." + name, nested,
+                             visitor);
+          }
+        } else {
+          final boolean union = "type".equals(key) && value.isArray();
+          forEachIteration(value, path,
+                           nested || union || "items".equals(key) || "values".equals(key),
+                           visitor);
+        }
+      }
+    } else if (node.isArray()) {
+      for (JsonNode element : node) {
+        forEachIteration(element, path, nested, visitor);
+      }
+    }
+  }
+
+  private static void strideIteration(ObjectNode iteration, long offset, long stride) {
+    final JsonNode start = iteration.get(ITERATION_START_PROP);
+    final JsonNode restart = iteration.get(ITERATION_RESTART_PROP);
+    // With a whole number of strides per period, shifting the period along with the start makes
+    // every lane wrap around to its own next value, exactly like the original sequence
+    final boolean shiftRestart = restart != null && splitsEvenly(iteration, stride);
+    if (isIntegral(iteration)) {
+      final long step = integralStep(iteration);
+      putIntegral(iteration, ITERATION_START_PROP, start.asLong() + offset * step);
+      putIntegral(iteration, ITERATION_STEP_PROP, stride * step);
+      if (shiftRestart) {
+        putIntegral(iteration, ITERATION_RESTART_PROP, restart.asLong() + offset * step);
+      }
+    } else {
+      final double step = floatingStep(iteration);
+      iteration.put(ITERATION_START_PROP, start.asDouble() + offset * step);
+      iteration.put(ITERATION_STEP_PROP, stride * step);
+      if (shiftRestart) {
+        iteration.put(ITERATION_RESTART_PROP, restart.asDouble() + offset * step);
+      }
+    }
+  }
+
+  /**
+   * Whether every {@code stride}-th value of the iteration, from any offset, is itself an
+   * iteration, which takes a period of a whole multiple of {@code stride} steps.
+   */
+  private static boolean splitsEvenly(JsonNode iteration, long stride) {
+    final JsonNode restart = iteration.get(ITERATION_RESTART_PROP);
+    if (restart == null) {
+      return true;
+    }
+    final JsonNode start = iteration.get(ITERATION_START_PROP);
+    if (isIntegral(iteration)) {
+      final long period = restart.asLong() - start.asLong();
+      final long step = integralStep(iteration);
+      return period % step == 0 && (period / step) % stride == 0;
+    }
+    final double steps = (restart.asDouble() - start.asDouble()) / floatingStep(iteration);
+    final double wholeSteps = Math.rint(steps);
+    return Math.abs(steps - wholeSteps) < 1e-9 * Math.max(1.0, Math.abs(wholeSteps))
+           && wholeSteps % stride == 0;
+  }
+
+  private static void advanceIteration(ObjectNode iteration, long records) {
+    final JsonNode start = iteration.get(ITERATION_START_PROP);
+    if (isIntegral(iteration)) {
+      putIntegral(iteration, ITERATION_START_PROP,
+                  start.asLong() + records * integralStep(iteration));
+    } else {
+      iteration.put(ITERATION_START_PROP, start.asDouble() + records * floatingStep(iteration));
+    }
+  }
+
+  private static boolean isIntegral(JsonNode iteration) {
+    final JsonNode step = iteration.get(ITERATION_STEP_PROP);
+    return iteration.get(ITERATION_START_PROP).isIntegralNumber()
+           && (step == null || step.isIntegralNumber());
+  }
+
+  private static boolean isDescending(JsonNode iteration) {
+    final JsonNode restart = iteration.get(ITERATION_RESTART_PROP);
+    return restart != null
+           && restart.asDouble() < iteration.get(ITERATION_START_PROP).asDouble();
+  }
+
+  private static long integralStep(JsonNode iteration) {
+    final JsonNode step = iteration.get(ITERATION_STEP_PROP);
+    return step != null ? step.asLong() : (isDescending(iteration) ? -1L : 1L);
+  }
+
+  private static double floatingStep(JsonNode iteration) {
+    final JsonNode step = iteration.get(ITERATION_STEP_PROP);
+    return step != null ? step.asDouble() : (isDescending(iteration) ? -1.0 : 1.0);
+  }
+
+  private static void sliceKeyField(ObjectNode root, String keyField, int taskId, int taskCount) {
+    for (JsonNode field : root.path("fields")) {
+      if (!keyField.equals(field.path("name").asText())) {
+        continue;
+      }
+      final JsonNode props = field.path("type").path(ARG_PROPERTIES_PROP);
+      if (props.has(ITERATION_PROP)) {
+        // Already disjoint thanks to the iteration stride
+        return;
+      } else if (props.path(RANGE_PROP).isObject()) {
+        sliceRange((ObjectNode) props.get(RANGE_PROP), keyField, taskId, taskCount);
+        return;
+      } else if (props.path(OPTIONS_PROP).isArray()) {
+        sliceOptions((ObjectNode) props, keyField, taskId, taskCount);
+        return;
+      }
+      break;
+    }
+    log.warn("Key field '{}' has no iteration, range or options to shard; tasks may generate "
+             + "overlapping keys", keyField);
+  }
+
+  private static void sliceRange(ObjectNode range, String keyField, int taskId, int taskCount) {
+    final JsonNode min = range.get(RANGE_MIN_PROP);
+    final JsonNode max = range.get(RANGE_MAX_PROP);
+    if (min == null || max == null) {
+      log.warn("Key field '{}' range needs both a min and a max to be sharded", keyField);
+    } else if (min.isIntegralNumber() && max.isIntegralNumber()) {
+      final long width = max.asLong() - min.asLong();
+      if (width < taskCount) {
+        log.warn("Key field '{}' range is too narrow to give each of the {} tasks its own slice",
+                 keyField, taskCount);
+        return;
+      }
+      // Half-open [min, max) slices whose widths differ by at most one
+      final long lower = min.asLong() + taskId * (width / taskCount)
+                         + Math.min(taskId, width % taskCount);
+      final long upper = lower + width / taskCount + (taskId < width % taskCount ? 1 : 0);
+      putIntegral(range, RANGE_MIN_PROP, lower);
+      putIntegral(range, RANGE_MAX_PROP, upper);
+    } else {
+      final double width = max.asDouble() - min.asDouble();
+      range.put(RANGE_MIN_PROP, min.asDouble() + width * taskId / taskCount);
+      range.put(RANGE_MAX_PROP, min.asDouble() + width * (taskId + 1) / taskCount);
+    }
+  }
+
+  private static void sliceOptions(ObjectNode props, String keyField, int taskId, int taskCount) {
+    final JsonNode options = props.get(OPTIONS_PROP);
+    if (options.size() < taskCount) {
+      log.warn("Key field '{}' has fewer options than the {} tasks, so some options are shared",
+               keyField, taskCount);
+      return;
+    }
+    final ArrayNode slice = props.putArray(OPTIONS_PROP);
+    for (int i = taskId; i < options.size(); i += taskCount) {
+      slice.add(options.get(i));
+    }
+  }
+
+  private static void putIntegral(ObjectNode node, String name, long value) {
+    // Keep small values as ints so they still match int-typed fields
+    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+      node.put(name, (int) value);
+    } else {
+      node.put(name, value);
+    }
+  }
+}
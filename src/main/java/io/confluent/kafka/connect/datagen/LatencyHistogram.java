@@ -0,0 +1,176 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative latencies in nanoseconds. Values are counted in
+ * log-linear buckets: every power of two is split into 64 equal buckets, so any recorded value
+ * is reported with a relative error below 1/64 regardless of its magnitude, using a fixed 30KB
+ * of counters. Any number of threads can record concurrently.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long valueNanos) {
+    record(valueNanos, 1L);
+  }
+
+  /**
+   * Record the same value {@code times} times, at the cost of recording it once.
+   */
+  void record(long valueNanos, long times) {
+    if (times <= 0) {
+      return;
+    }
+    final long value = Math.max(0L, valueNanos);
+    counts.addAndGet(bucketIndex(value), times);
+    count.addAndGet(times);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Record a value measured while one was expected every {@code expectedIntervalNanos},
+   * correcting for coordinated omission the way HdrHistogram does: a value spanning several
+   * intervals held up the values due during it, so those are recorded too, each one interval
+   * shorter than the one before, down to the interval itself. They are added a bucket at a time,
+   * so even a long stall costs one update per bucket rather than one per missed value.
+   */
+  void recordCorrected(long valueNanos, long expectedIntervalNanos) {
+    record(valueNanos);
+    if (expectedIntervalNanos <= 0) {
+      return;
+    }
+    long value = valueNanos - expectedIntervalNanos;
+    long added = 0L;
+    while (value >= expectedIntervalNanos) {
+      final int index = bucketIndex(value);
+      final long floor = Math.max(lowestEquivalentValue(index), expectedIntervalNanos);
+      final long values = (value - floor) / expectedIntervalNanos + 1;
+      counts.addAndGet(index, values);
+      added += values;
+      value -= values * expectedIntervalNanos;
+    }
+    count.addAndGet(added);
+  }
+
+  long count() {
+    return count.get();
+  }
+
+  long max() {
+    return max.get();
+  }
+
+  /**
+   * The smallest recorded value, within the bucket precision, that is greater than or equal to
+   * {@code percentile} percent of all recorded values, or 0 if nothing was recorded.
+   */
+  long percentile(double percentile) {
+    final long total = count.get();
+    if (total == 0) {
+      return 0L;
+    }
+    final long rank = Math.max(1L, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+    long seen = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Move everything recorded so far into a new histogram and start over, so that a reporter can
+   * look at one interval at a time while other threads keep recording.
+   */
+  LatencyHistogram getAndReset() {
+    final LatencyHistogram interval = new LatencyHistogram();
+    long moved = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      final long bucket = counts.getAndSet(i, 0L);
+      if (bucket != 0) {
+        interval.counts.set(i, bucket);
+        moved += bucket;
+      }
+    }
+    // Values recorded while moving stay in whichever histogram their bucket ended up in
+    count.addAndGet(-moved);
+    interval.count.set(moved);
+    interval.max.set(max.getAndSet(0L));
+    return interval;
+  }
+
+  /**
+   * Add everything recorded in {@code other} to this histogram.
+   */
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      final long bucket = other.counts.get(i);
+      if (bucket != 0) {
+        counts.addAndGet(i, bucket);
+      }
+    }
+    count.addAndGet(other.count());
+    long current = max.get();
+    while (other.max() > current && !max.compareAndSet(current, other.max())) {
+      current = max.get();
+    }
+  }
+
+  static int bucketIndex(long value) {
+    final int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+    if (bits <= SUB_BUCKET_BITS) {
+      return (int) value;
+    }
+    // Keep the top SUB_BUCKET_BITS bits; the shift picks the power of two
+    final int shift = bits - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+  }
+
+  static long lowestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKET_HALF) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKET_HALF - 1;
+    final long subBucket = index - shift * SUB_BUCKET_HALF;
+    return subBucket << shift;
+  }
+
+  static long highestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKET_HALF) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKET_HALF - 1;
+    final long subBucket = index - shift * SUB_BUCKET_HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
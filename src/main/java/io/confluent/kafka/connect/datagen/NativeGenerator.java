@@ -0,0 +1,510 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.mifmif.common.regex.Generex;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+
+/**
+ * Generates Connect {@link Struct}s straight from the {@code arg.properties} annotations of an
+ * Avro Random Generator schema, without building an Avro record first. The schema is compiled
+ * once into a tree of value generators, each writing into the precomputed Connect schema.
+ *
+ * <p>The {@code options}, {@code range}, {@code iteration}, {@code regex} and {@code length}
+ * annotations are supported. Schemas using anything else, such as logical types, bytes, fixed
+ * types, unions of several non-null types or iterations over strings, are rejected with an
+ * {@link IllegalArgumentException} so the caller can fall back to the Avro engine.
+ *
+ * <p>Like the Avro engine, iterations advance every time their value is generated, and instances
+ * are not thread-safe.
+ */
+class NativeGenerator {
+
+  static final String REGEX_PROP = "regex";
+  static final String LENGTH_PROP = "length";
+  static final String LENGTH_MIN_PROP = "min";
+  static final String LENGTH_MAX_PROP = "max";
+
+  // Strings, arrays and maps without a length annotation get a length in [0, 16)
+  private static final int DEFAULT_MIN_LENGTH = 0;
+  private static final int DEFAULT_MAX_LENGTH = 16;
+
+  private static final Set<String> SCALAR_PROPS = new HashSet<>(Arrays.asList(
+      GenerationPlan.OPTIONS_PROP, GenerationPlan.RANGE_PROP, GenerationPlan.ITERATION_PROP
+  ));
+  private static final Set<String> STRING_PROPS = new HashSet<>(Arrays.asList(
+      GenerationPlan.OPTIONS_PROP, REGEX_PROP, LENGTH_PROP
+  ));
+  private static final Set<String> COLLECTION_PROPS = new HashSet<>(Arrays.asList(
+      GenerationPlan.OPTIONS_PROP, LENGTH_PROP
+  ));
+  private static final Set<String> OPTIONS_ONLY = Collections.singleton(
+      GenerationPlan.OPTIONS_PROP
+  );
+
+  /**
+   * Generates one Connect value.
+   */
+  interface ValueGenerator {
+    Object generate();
+  }
+
+  private final Random random;
+  private final Schema connectSchema;
+  private final ValueGenerator root;
+
+  NativeGenerator(org.apache.avro.Schema avroSchema, Schema connectSchema, Random random) {
+    this.random = random;
+    this.connectSchema = connectSchema;
+    this.root = compile(avroSchema, connectSchema, avroSchema.getFullName());
+  }
+
+  Schema schema() {
+    return connectSchema;
+  }
+
+  Object generate() {
+    return root.generate();
+  }
+
+  private ValueGenerator compile(org.apache.avro.Schema avro, Schema connect, String path) {
+    if (avro.getLogicalType() != null) {
+      throw unsupported(path, "logical type " + avro.getLogicalType().getName());
+    }
+    final Map<?, ?> props = argProperties(avro, path);
+    if (props.containsKey(GenerationPlan.OPTIONS_PROP)) {
+      return compileOptions(avro, connect, props.get(GenerationPlan.OPTIONS_PROP), path);
+    }
+    switch (avro.getType()) {
+      case RECORD:
+        checkProps(props, OPTIONS_ONLY, path);
+        return compileRecord(avro, expect(connect, Schema.Type.STRUCT, path), path);
+      case ARRAY:
+        checkProps(props, COLLECTION_PROPS, path);
+        return compileArray(avro, expect(connect, Schema.Type.ARRAY, path), props, path);
+      case MAP:
+        checkProps(props, COLLECTION_PROPS, path);
+        return compileMap(avro, expect(connect, Schema.Type.MAP, path), props, path);
+      case UNION:
+        return compileUnion(avro, connect, path);
+      case ENUM:
+        checkProps(props, OPTIONS_ONLY, path);
+        expect(connect, Schema.Type.STRING, path);
+        final List<String> symbols = avro.getEnumSymbols();
+        return () -> symbols.get(random.nextInt(symbols.size()));
+      case STRING:
+        checkProps(props, STRING_PROPS, path);
+        return compileString(expect(connect, Schema.Type.STRING, path), props, path);
+      case INT:
+        checkProps(props, SCALAR_PROPS, path);
+        expect(connect, Schema.Type.INT32, path);
+        return compileIntegral(props, Integer.MIN_VALUE, Integer.MAX_VALUE, true, path);
+      case LONG:
+        checkProps(props, SCALAR_PROPS, path);
+        expect(connect, Schema.Type.INT64, path);
+        return compileIntegral(props, Long.MIN_VALUE, Long.MAX_VALUE, false, path);
+      case FLOAT:
+        checkProps(props, SCALAR_PROPS, path);
+        expect(connect, Schema.Type.FLOAT32, path);
+        return compileFloating(props, true, path);
+      case DOUBLE:
+        checkProps(props, SCALAR_PROPS, path);
+        expect(connect, Schema.Type.FLOAT64, path);
+        return compileFloating(props, false, path);
+      case BOOLEAN:
+        checkProps(props, OPTIONS_ONLY, path);
+        expect(connect, Schema.Type.BOOLEAN, path);
+        return random::nextBoolean;
+      case NULL:
+        checkProps(props, Collections.<String>emptySet(), path);
+        return () -> null;
+      default:
+        throw unsupported(path, avro.getType().getName() + " type");
+    }
+  }
+
+  private ValueGenerator compileRecord(org.apache.avro.Schema avro, Schema connect, String path) {
+    final List<org.apache.avro.Schema.Field> avroFields = avro.getFields();
+    final Field[] fields = new Field[avroFields.size()];
+    final ValueGenerator[] generators = new ValueGenerator[avroFields.size()];
+    for (int i = 0; i < fields.length; i++) {
+      final org.apache.avro.Schema.Field avroField = avroFields.get(i);
+      final String fieldPath = path + "." + avroField.name();
+      fields[i] = connect.field(avroField.name());
+      if (fields[i] == null) {
+        throw unsupported(fieldPath, "field missing from the Connect schema");
+      }
+      generators[i] = compile(avroField.schema(), fields[i].schema(), fieldPath);
+    }
+    return () -> {
+      final Struct struct = new Struct(connect);
+      for (int i = 0; i < fields.length; i++) {
+        struct.put(fields[i], generators[i].generate());
+      }
+      return struct;
+    };
+  }
+
+  private ValueGenerator compileArray(
+      org.apache.avro.Schema avro, Schema connect, Map<?, ?> props, String path
+  ) {
+    final ValueGenerator length = compileLength(props, path);
+    final ValueGenerator element = compile(avro.getElementType(), connect.valueSchema(),
+                                           path + "[]");
+    return () -> {
+      final int size = (Integer) length.generate();
+      final List<Object> elements = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        elements.add(element.generate());
+      }
+      return elements;
+    };
+  }
+
+  private ValueGenerator compileMap(
+      org.apache.avro.Schema avro, Schema connect, Map<?, ?> props, String path
+  ) {
+    expect(connect.keySchema(), Schema.Type.STRING, path);
+    final ValueGenerator length = compileLength(props, path);
+    final ValueGenerator key = compileString(connect.keySchema(), Collections.emptyMap(), path);
+    final ValueGenerator value = compile(avro.getValueType(), connect.valueSchema(), path + "{}");
+    return () -> {
+      final int size = (Integer) length.generate();
+      final Map<Object, Object> entries = new HashMap<>(size * 4 / 3 + 1);
+      for (int i = 0; i < size; i++) {
+        entries.put(key.generate(), value.generate());
+      }
+      return entries;
+    };
+  }
+
+  private ValueGenerator compileUnion(org.apache.avro.Schema avro, Schema connect, String path) {
+    // Only [null, T] unions map directly onto an optional Connect schema
+    final List<org.apache.avro.Schema> branches = avro.getTypes();
+    if (branches.size() != 2 || !connect.isOptional()) {
+      throw unsupported(path, "union of several non-null types");
+    }
+    final int nullBranch;
+    if (branches.get(0).getType() == org.apache.avro.Schema.Type.NULL) {
+      nullBranch = 0;
+    } else if (branches.get(1).getType() == org.apache.avro.Schema.Type.NULL) {
+      nullBranch = 1;
+    } else {
+      throw unsupported(path, "union of several non-null types");
+    }
+    final ValueGenerator branch = compile(branches.get(1 - nullBranch), connect, path);
+    return () -> random.nextInt(2) == nullBranch ? null : branch.generate();
+  }
+
+  private ValueGenerator compileString(Schema connect, Map<?, ?> props, String path) {
+    final Object regex = props.get(REGEX_PROP);
+    if (regex != null) {
+      final Generex generex = new Generex(regex.toString(), random);
+      if (!props.containsKey(LENGTH_PROP)) {
+        return generex::random;
+      }
+      final int[] bounds = lengthBounds(props.get(LENGTH_PROP), path);
+      return () -> generex.random(bounds[0], bounds[1] - 1);
+    }
+    final ValueGenerator length = compileLength(props, path);
+    return () -> {
+      final int size = (Integer) length.generate();
+      final char[] chars = new char[size];
+      for (int i = 0; i < size; i++) {
+        // Printable ASCII
+        chars[i] = (char) (' ' + random.nextInt('\u007f' - ' '));
+      }
+      return new String(chars);
+    };
+  }
+
+  private ValueGenerator compileIntegral(
+      Map<?, ?> props, long defaultMin, long defaultMax, boolean isInt, String path
+  ) {
+    final Object iteration = props.get(GenerationPlan.ITERATION_PROP);
+    if (iteration != null) {
+      return compileIntegralIteration(iteration, isInt, path);
+    }
+    final Object range = props.get(GenerationPlan.RANGE_PROP);
+    if (range == null) {
+      return isInt ? random::nextInt : random::nextLong;
+    }
+    final long min = number(range, GenerationPlan.RANGE_MIN_PROP, defaultMin, path).longValue();
+    final long max = number(range, GenerationPlan.RANGE_MAX_PROP, defaultMax, path).longValue();
+    if (min >= max) {
+      throw unsupported(path, "empty range");
+    }
+    final long width = max - min;
+    if (width > 0) {
+      // The range is half-open like in the Avro engine
+      return isInt
+             ? () -> (int) (min + Math.floorMod(random.nextLong(), width))
+             : () -> min + Math.floorMod(random.nextLong(), width);
+    }
+    // The width overflowed, so draw values until one falls in the range
+    return () -> {
+      long value;
+      do {
+        value = random.nextLong();
+      } while (value < min || value >= max);
+      return value;
+    };
+  }
+
+  private ValueGenerator compileIntegralIteration(Object iteration, boolean isInt, String path) {
+    final long start = number(iteration, GenerationPlan.ITERATION_START_PROP, null, path)
+        .longValue();
+    final Number restart = optionalNumber(iteration, GenerationPlan.ITERATION_RESTART_PROP, path);
+    final boolean descending = restart != null && restart.longValue() < start;
+    final long step = number(iteration, GenerationPlan.ITERATION_STEP_PROP,
+                             descending ? -1L : 1L, path).longValue();
+    if (step == 0) {
+      throw unsupported(path, "iteration with a zero step");
+    }
+    final long period = restart != null ? restart.longValue() - start : 0L;
+    final long[] distance = {0L};
+    return () -> {
+      final long value = start + distance[0];
+      distance[0] += step;
+      if (period != 0) {
+        // floorMod keeps the sign of the period, so this works for descending iterations too
+        distance[0] = Math.floorMod(distance[0], period);
+      }
+      return isInt ? (Object) (int) value : (Object) value;
+    };
+  }
+
+  private ValueGenerator compileFloating(Map<?, ?> props, boolean isFloat, String path) {
+    final Object iteration = props.get(GenerationPlan.ITERATION_PROP);
+    final Object range = props.get(GenerationPlan.RANGE_PROP);
+    if (iteration != null) {
+      final double start = number(iteration, GenerationPlan.ITERATION_START_PROP, null, path)
+          .doubleValue();
+      final Number restart = optionalNumber(iteration, GenerationPlan.ITERATION_RESTART_PROP,
+                                            path);
+      final boolean descending = restart != null && restart.doubleValue() < start;
+      final double step = number(iteration, GenerationPlan.ITERATION_STEP_PROP,
+                                 descending ? -1.0 : 1.0, path).doubleValue();
+      final double period = restart != null ? restart.doubleValue() - start : 0.0;
+      final long[] count = {0L};
+      return () -> {
+        double distance = count[0]++ * step;
+        if (period != 0.0) {
+          distance -= Math.floor(distance / period) * period;
+        }
+        return isFloat ? (Object) (float) (start + distance) : (Object) (start + distance);
+      };
+    } else if (range != null) {
+      final double min = number(range, GenerationPlan.RANGE_MIN_PROP, null, path).doubleValue();
+      final double max = number(range, GenerationPlan.RANGE_MAX_PROP, null, path).doubleValue();
+      final double width = max - min;
+      return isFloat
+             ? () -> (float) (min + random.nextDouble() * width)
+             : () -> min + random.nextDouble() * width;
+    }
+    return isFloat ? random::nextFloat : random::nextDouble;
+  }
+
+  private ValueGenerator compileLength(Map<?, ?> props, String path) {
+    final Object lengthProp = props.get(LENGTH_PROP);
+    final int[] bounds = lengthProp == null
+                         ? new int[] {DEFAULT_MIN_LENGTH, DEFAULT_MAX_LENGTH}
+                         : lengthBounds(lengthProp, path);
+    final int min = bounds[0];
+    final int width = bounds[1] - bounds[0];
+    return width <= 1 ? () -> min : () -> min + random.nextInt(width);
+  }
+
+  private static int[] lengthBounds(Object lengthProp, String path) {
+    if (lengthProp instanceof Number) {
+      final int length = ((Number) lengthProp).intValue();
+      return new int[] {length, length + 1};
+    }
+    final int min = number(lengthProp, LENGTH_MIN_PROP, DEFAULT_MIN_LENGTH, path).intValue();
+    final int max = number(lengthProp, LENGTH_MAX_PROP, DEFAULT_MAX_LENGTH, path).intValue();
+    if (min < 0 || min >= max) {
+      throw unsupported(path, "invalid length");
+    }
+    return new int[] {min, max};
+  }
+
+  private ValueGenerator compileOptions(
+      org.apache.avro.Schema avro, Schema connect, Object optionsProp, String path
+  ) {
+    if (!(optionsProp instanceof List) || ((List<?>) optionsProp).isEmpty()) {
+      throw unsupported(path, "options that are not a non-empty list");
+    }
+    final List<?> options = (List<?>) optionsProp;
+    final Object[] values = new Object[options.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = optionValue(avro, connect, options.get(i), path);
+    }
+    if (!containsStruct(connect)) {
+      // Options without structs are immutable, so they are shared by every record
+      return () -> values[random.nextInt(values.length)];
+    }
+    return () -> {
+      final int index = random.nextInt(values.length);
+      return optionValue(avro, connect, options.get(index), path);
+    };
+  }
+
+  private static Object optionValue(
+      org.apache.avro.Schema avro, Schema connect, Object option, String path
+  ) {
+    if (option == null) {
+      if (!connect.isOptional() && avro.getType() != org.apache.avro.Schema.Type.NULL) {
+        throw unsupported(path, "null option for a required value");
+      }
+      return null;
+    }
+    switch (avro.getType()) {
+      case RECORD:
+        if (!(option instanceof Map)) {
+          throw unsupported(path, "option that is not an object");
+        }
+        final Struct struct = new Struct(connect);
+        for (org.apache.avro.Schema.Field avroField : avro.getFields()) {
+          final Field field = connect.field(avroField.name());
+          struct.put(field, optionValue(avroField.schema(), field.schema(),
+                                        ((Map<?, ?>) option).get(avroField.name()),
+                                        path + "." + avroField.name()));
+        }
+        return struct;
+      case ARRAY:
+        if (!(option instanceof List)) {
+          throw unsupported(path, "option that is not an array");
+        }
+        final List<Object> elements = new ArrayList<>(((List<?>) option).size());
+        for (Object element : (List<?>) option) {
+          elements.add(optionValue(avro.getElementType(), connect.valueSchema(), element,
+                                   path + "[]"));
+        }
+        return Collections.unmodifiableList(elements);
+      case MAP:
+        if (!(option instanceof Map)) {
+          throw unsupported(path, "option that is not an object");
+        }
+        final Map<Object, Object> entries = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) option).entrySet()) {
+          entries.put(entry.getKey().toString(),
+                      optionValue(avro.getValueType(), connect.valueSchema(), entry.getValue(),
+                                  path + "{}"));
+        }
+        return Collections.unmodifiableMap(entries);
+      case UNION:
+        for (org.apache.avro.Schema branch : avro.getTypes()) {
+          if (branch.getType() != org.apache.avro.Schema.Type.NULL) {
+            return optionValue(branch, connect, option, path);
+          }
+        }
+        throw unsupported(path, "non-null option for a null union");
+      case ENUM:
+      case STRING:
+        return option.toString();
+      case INT:
+        return ((Number) option).intValue();
+      case LONG:
+        return ((Number) option).longValue();
+      case FLOAT:
+        return ((Number) option).floatValue();
+      case DOUBLE:
+        return ((Number) option).doubleValue();
+      case BOOLEAN:
+        return (Boolean) option;
+      default:
+        throw unsupported(path, "options for the " + avro.getType().getName() + " type");
+    }
+  }
+
+  private static boolean containsStruct(Schema connect) {
+    switch (connect.type()) {
+      case STRUCT:
+        return true;
+      case ARRAY:
+        return containsStruct(connect.valueSchema());
+      case MAP:
+        return containsStruct(connect.keySchema()) || containsStruct(connect.valueSchema());
+      default:
+        return false;
+    }
+  }
+
+  private static Map<?, ?> argProperties(org.apache.avro.Schema avro, String path) {
+    final Object props = avro.getObjectProp(GenerationPlan.ARG_PROPERTIES_PROP);
+    if (props == null) {
+      return Collections.emptyMap();
+    } else if (!(props instanceof Map)) {
+      throw unsupported(path, GenerationPlan.ARG_PROPERTIES_PROP + " that is not an object");
+    }
+    return (Map<?, ?>) props;
+  }
+
+  private static void checkProps(Map<?, ?> props, Set<String> supported, String path) {
+    for (Object name : props.keySet()) {
+      if (!supported.contains(name)) {
+        throw unsupported(path, "'" + name + "' annotation");
+      }
+    }
+  }
+
+  private static Number number(Object annotation, String name, Number defaultValue, String path) {
+    final Number value = optionalNumber(annotation, name, path);
+    if (value != null) {
+      return value;
+    } else if (defaultValue != null) {
+      return defaultValue;
+    }
+    throw unsupported(path, "annotation without a numeric '" + name + "'");
+  }
+
+  private static Number optionalNumber(Object annotation, String name, String path) {
+    if (!(annotation instanceof Map)) {
+      throw unsupported(path, "annotation that is not an object");
+    }
+    final Object value = ((Map<?, ?>) annotation).get(name);
+    if (value != null && !(value instanceof Number)) {
+      throw unsupported(path, "non-numeric '" + name + "'");
+    }
+    return (Number) value;
+  }
+
+  private static Schema expect(Schema connect, Schema.Type type, String path) {
+    if (connect.type() != type) {
+      throw unsupported(path, "Connect type " + connect.type());
+    }
+    return connect;
+  }
+
+  private static IllegalArgumentException unsupported(String path, String what) {
+    return new IllegalArgumentException(
+        String.format("'%s' uses %s, which the native engine does not support", path, what)
+    );
+  }
+}
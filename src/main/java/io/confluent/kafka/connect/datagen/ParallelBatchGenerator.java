@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+import org.apache.kafka.connect.source.SourceRecord;
+
+/**
+ * Generates each batch of a task's records on several cores of a {@link ForkJoinPool}.
+ *
+ * <p>Lane {@code l} of {@code lanes} always generates the records whose index is {@code l} modulo
+ * {@code lanes}, in increasing order, so each lane's generator sees the same sequence no matter how
+ * the records are split into batches. The generated records are stitched back together by index,
+ * so the output order is deterministic. Records that the caller does not take, for example because
+ * the batch reached its byte limit, are handed out first on the next call.
+ */
+class ParallelBatchGenerator implements AutoCloseable {
+
+  private final List<RecordGenerator> generators;
+  private final ForkJoinPool pool;
+  private SourceRecord[] batch = new SourceRecord[0];
+  private long batchStart;
+  private int batchSize;
+  private int position;
+
+  ParallelBatchGenerator(int lanes, IntFunction<RecordGenerator> generators) {
+    this.generators = new ArrayList<>(lanes);
+    for (int lane = 0; lane < lanes; lane++) {
+      this.generators.add(generators.apply(lane));
+    }
+    this.pool = new ForkJoinPool(lanes);
+  }
+
+  /**
+   * Return the record with the given index, generating a batch of up to {@code remaining} records
+   * in parallel when there are no generated records left. Indexes must be requested in order.
+   */
+  SourceRecord next(long recordIndex, int remaining) {
+    if (position == batchSize) {
+      generateBatch(recordIndex, remaining);
+    }
+    if (recordIndex != batchStart + position) {
+      throw new IllegalStateException("Expected record " + (batchStart + position)
+                                      + " to be requested next, not " + recordIndex);
+    }
+    final SourceRecord record = batch[position];
+    batch[position++] = null;
+    return record;
+  }
+
+  private void generateBatch(long start, int size) {
+    if (batch.length < size) {
+      batch = new SourceRecord[size];
+    }
+    final int lanes = generators.size();
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>(lanes);
+    for (int lane = 0; lane < lanes; lane++) {
+      final RecordGenerator generator = generators.get(lane);
+      // First index in [start, start + size) that belongs to this lane
+      final int first = (int) Math.floorMod(lane - start, (long) lanes);
+      if (first < size) {
+        tasks.add(pool.submit(() -> {
+          for (int i = first; i < size; i += lanes) {
+            batch[i] = generator.generate(start + i);
+          }
+        }));
+      }
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    batchStart = start;
+    batchSize = size;
+    position = 0;
+  }
+
+  @Override
+  public void close() {
+    pool.shutdownNow();
+  }
+}
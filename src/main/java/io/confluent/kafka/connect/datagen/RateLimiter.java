@@ -0,0 +1,104 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that paces generation to a fixed number of permits (records or bytes) per second.
+ *
+ * <p>The bucket keeps an absolute schedule based on {@link System#nanoTime()}: every reservation
+ * pushes the time at which the next permits become available by {@code permits / rate}, so
+ * rounding errors and late wake-ups do not accumulate into drift over long runs. If the caller
+ * falls behind, at most {@link #MAX_BURST_NANOS} worth of permits can be claimed without waiting
+ * before the schedule is reset to the current time. The rate can be changed between
+ * reservations, which only affects the permits reserved from then on.
+ */
+class RateLimiter {
+
+  static final long MAX_BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private double nanosPerPermit;
+  private final LongSupplier nanoClock;
+  private long nextFreeNanos;
+  private long lastDueNanos;
+  private double fractionalNanos;
+
+  RateLimiter(double permitsPerSecond) {
+    this(permitsPerSecond, System::nanoTime);
+  }
+
+  RateLimiter(double permitsPerSecond, LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+    this.nextFreeNanos = nanoClock.getAsLong();
+    setRate(permitsPerSecond);
+  }
+
+  void setRate(double permitsPerSecond) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("Rate must be positive, was " + permitsPerSecond);
+    }
+    this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+  }
+
+  /**
+   * Reserve a batch of permits.
+   *
+   * @param permits the number of permits the batch consumes
+   * @return the number of nanoseconds the caller must wait before the batch is due
+   */
+  long reserve(long permits) {
+    final long now = nanoClock.getAsLong();
+    if (nextFreeNanos < now - MAX_BURST_NANOS) {
+      nextFreeNanos = now - MAX_BURST_NANOS;
+    }
+    final long due = nextFreeNanos;
+    lastDueNanos = due;
+    final double cost = permits * nanosPerPermit + fractionalNanos;
+    final long wholeNanos = (long) cost;
+    fractionalNanos = cost - wholeNanos;
+    nextFreeNanos += wholeNanos;
+    return Math.max(0L, due - now);
+  }
+
+  /**
+   * The time on the schedule at which the last reserved batch was due, to tell how late it was
+   * really handed out.
+   */
+  long lastDueNanos() {
+    return lastDueNanos;
+  }
+
+  double nanosPerPermit() {
+    return nanosPerPermit;
+  }
+
+  /**
+   * Park the current thread for the given number of nanoseconds, returning early only if the
+   * thread is interrupted.
+   */
+  static void sleepNanos(long nanos) {
+    final long deadline = System.nanoTime() + nanos;
+    long remaining = nanos;
+    while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+      LockSupport.parkNanos(remaining);
+      remaining = deadline - System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import io.confluent.avro.random.generator.Generator;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.source.SourceRecord;
+
+/**
+ * Generates the records of a task from a {@link GenerationPlan} and converts them to
+ * {@link SourceRecord}s. Instances are not thread-safe; every generating thread uses its own.
+ */
+class RecordGenerator {
+
+  private static final Schema KEY_SCHEMA = Schema.STRING_SCHEMA;
+
+  private final String topic;
+  private final Map<String, ?> sourcePartition;
+  private final Generator generator;
+  private final NativeGenerator nativeGenerator;
+  private final CounterRandom counterRandom;
+  private final ConversionPlan conversionPlan;
+  private final ConversionPlan.ValueConverter keyReader;
+  private final Field keyField;
+  private final ValueEncoder valueEncoder;
+  private final DeltaGenerator deltaGenerator;
+  private final DatagenTaskMetrics metrics;
+
+  RecordGenerator(
+      GenerationPlan plan,
+      ConversionPlan conversionPlan,
+      String schemaKeyField,
+      String topic,
+      Map<String, ?> sourcePartition,
+      Random random,
+      boolean nativeEngine,
+      ValueEncoder valueEncoder,
+      Map<String, Double> volatileFields,
+      Object[] templates,
+      DatagenTaskMetrics metrics
+  ) {
+    this.topic = topic;
+    this.metrics = metrics;
+    this.sourcePartition = sourcePartition;
+    this.counterRandom = random instanceof CounterRandom ? (CounterRandom) random : null;
+    this.valueEncoder = valueEncoder;
+    // The plan only rewrites annotations, so generated records share the field positions of the
+    // original schema, which is also the one the conversion plan is built for
+    this.conversionPlan = conversionPlan;
+    this.keyReader = schemaKeyField.isEmpty() ? null : conversionPlan.fieldReader(schemaKeyField);
+    this.keyField = keyReader != null ? conversionPlan.schema().field(schemaKeyField) : null;
+    if (nativeEngine) {
+      this.generator = null;
+      this.nativeGenerator = new NativeGenerator(plan.schema(), conversionPlan.schema(), random);
+    } else {
+      this.generator = new Generator(plan.schema(), random);
+      this.nativeGenerator = null;
+    }
+    this.deltaGenerator = templates == null
+                          ? null
+                          : newDeltaGenerator(plan.schema(), volatileFields, templates, random);
+  }
+
+  /**
+   * Generate the values with index 0 up to {@code count} of the plan, which the generators of
+   * every lane derive their values from when {@code delta.fields} is set.
+   */
+  Object[] templates(int count) {
+    final Object[] templates = new Object[count];
+    for (int t = 0; t < count; t++) {
+      if (counterRandom != null) {
+        counterRandom.position(t);
+      }
+      if (nativeGenerator != null) {
+        templates[t] = nativeGenerator.generate();
+      } else if (valueEncoder != null) {
+        templates[t] = generateAvro();
+      } else {
+        templates[t] = conversionPlan.convert(generateAvro());
+      }
+    }
+    return templates;
+  }
+
+  SourceRecord generate(long recordIndex) {
+    if (counterRandom != null) {
+      counterRandom.position(recordIndex);
+    }
+    if (deltaGenerator != null) {
+      return toRecord(recordIndex, deltaGenerator.generate(recordIndex));
+    }
+    if (nativeGenerator != null) {
+      return toRecord(recordIndex, nativeGenerator.generate());
+    }
+    return toRecord(recordIndex, generateAvro());
+  }
+
+  private GenericRecord generateAvro() {
+    final Object generatedObject = generator.generate();
+    if (!(generatedObject instanceof GenericRecord)) {
+      throw new RuntimeException(String.format(
+          "Expected Avro Random Generator to return instance of GenericRecord, found %s instead",
+          generatedObject.getClass().getName()
+      ));
+    }
+    return (GenericRecord) generatedObject;
+  }
+
+  /**
+   * Build the record for a Connect value, or for an Avro record that still has to be converted
+   * or serialized.
+   */
+  private SourceRecord toRecord(long recordIndex, Object value) {
+    if (value instanceof Struct) {
+      final String keyString = keyField != null ? ((Struct) value).get(keyField).toString() : "";
+      return newRecord(recordIndex, keyString, conversionPlan.schema(), value);
+    }
+    final long conversionStart = System.nanoTime();
+    final String keyString = keyReader != null ? keyReader.convert(value).toString() : "";
+    final SourceRecord record;
+    if (valueEncoder != null) {
+      record = newRecord(recordIndex, keyString, Schema.BYTES_SCHEMA,
+                         valueEncoder.encode((GenericRecord) value));
+    } else {
+      record = newRecord(recordIndex, keyString, conversionPlan.schema(),
+                         conversionPlan.convert(value));
+    }
+    metrics.recordConversion(System.nanoTime() - conversionStart);
+    return record;
+  }
+
+  /**
+   * Compile generators for the volatile fields producing the same kind of values as the shared
+   * templates. Fields with an iteration are regenerated for every message, since their iteration
+   * would otherwise not advance once per message and could neither be resumed nor interleaved.
+   */
+  private DeltaGenerator newDeltaGenerator(
+      org.apache.avro.Schema planSchema,
+      Map<String, Double> volatileFields,
+      Object[] templates,
+      Random random
+  ) {
+    final int[] positions = new int[volatileFields.size()];
+    final double[] probabilities = new double[volatileFields.size()];
+    final NativeGenerator.ValueGenerator[] fieldGenerators =
+        new NativeGenerator.ValueGenerator[volatileFields.size()];
+    int i = 0;
+    for (Map.Entry<String, Double> entry : volatileFields.entrySet()) {
+      final org.apache.avro.Schema.Field field = planSchema.getField(entry.getKey());
+      if (field == null) {
+        throw new ConnectException("Field '" + entry.getKey() + "' not found in the schema");
+      }
+      if (entry.getValue() < 1.0 && GenerationPlan.hasIterations(field.schema())) {
+        throw new ConnectException("Field '" + entry.getKey() + "' has an iteration, so it must "
+                                   + "be regenerated for every message");
+      }
+      positions[i] = field.pos();
+      probabilities[i] = entry.getValue();
+      fieldGenerators[i] = fieldGenerator(field, random);
+      i++;
+    }
+    return new DeltaGenerator(templates, positions, probabilities, fieldGenerators, random);
+  }
+
+  private NativeGenerator.ValueGenerator fieldGenerator(
+      org.apache.avro.Schema.Field field, Random random
+  ) {
+    final Schema connectSchema = conversionPlan.schema().field(field.name()).schema();
+    if (nativeGenerator != null) {
+      return new NativeGenerator(field.schema(), connectSchema, random)::generate;
+    }
+    // The field's annotations are on its own schema, so it can be generated on its own
+    final Generator fieldValues = new Generator(field.schema(), random);
+    if (valueEncoder != null) {
+      return fieldValues::generate;
+    }
+    final ConversionPlan.ValueConverter converter = conversionPlan.fieldConverter(field.name());
+    return () -> converter.convert(fieldValues.generate());
+  }
+
+  private SourceRecord newRecord(
+      long recordIndex, String keyString, Schema valueSchema, Object messageValue
+  ) {
+    return new SourceRecord(
+        sourcePartition,
+        Collections.singletonMap(DatagenTask.POSITION_FIELD, recordIndex + 1),
+        topic,
+        KEY_SCHEMA,
+        keyString,
+        valueSchema,
+        messageValue
+    );
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Collections;
+
+import org.apache.kafka.connect.source.SourceRecord;
+
+/**
+ * A fixed number of records generated once and then handed out in turn for ever. The record with
+ * index {@code i} is a copy of pooled record {@code i % size}, with its own offset and,
+ * depending on {@code pool.rewrite}, its own key or timestamp. Pooled keys and values are shared
+ * by every copy and must not be modified.
+ */
+class RecordPool {
+
+  private final SourceRecord[] records;
+  private final long[] valueSizes;
+  private final boolean rewriteKey;
+  private final boolean rewriteTimestamp;
+
+  /**
+   * @param generator generates the pooled records, as the records with index 0 up to
+   *                  {@code size}
+   * @param size the number of records to pool
+   * @param rewrite one of the {@code pool.rewrite} values
+   */
+  RecordPool(RecordGenerator generator, int size, String rewrite) {
+    this.records = new SourceRecord[size];
+    this.valueSizes = new long[size];
+    for (int i = 0; i < size; i++) {
+      records[i] = generator.generate(i);
+      valueSizes[i] = SizeEstimator.estimate(records[i].value());
+    }
+    this.rewriteKey = DatagenConnectorConfig.POOL_REWRITE_KEY.equals(rewrite);
+    this.rewriteTimestamp = DatagenConnectorConfig.POOL_REWRITE_TIMESTAMP.equals(rewrite);
+  }
+
+  int size() {
+    return records.length;
+  }
+
+  SourceRecord next(long recordIndex) {
+    final SourceRecord pooled = records[slot(recordIndex)];
+    return new SourceRecord(
+        pooled.sourcePartition(),
+        Collections.singletonMap(DatagenTask.POSITION_FIELD, recordIndex + 1),
+        pooled.topic(),
+        null,
+        pooled.keySchema(),
+        rewriteKey ? Long.toString(recordIndex) : pooled.key(),
+        pooled.valueSchema(),
+        pooled.value(),
+        rewriteTimestamp ? System.currentTimeMillis() : null
+    );
+  }
+
+  /**
+   * The same as {@link SizeEstimator#estimate(SourceRecord)} for {@link #next(long)}'s record,
+   * without walking the shared value again.
+   */
+  long estimate(SourceRecord record, long recordIndex) {
+    return SizeEstimator.estimate(record.key()) + valueSizes[slot(recordIndex)];
+  }
+
+  private int slot(long recordIndex) {
+    return (int) Math.floorMod(recordIndex, (long) records.length);
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.ConnectException;
+
+/**
+ * Everything derived from a schema file that tasks can share, kept once per worker JVM. Tasks
+ * started with the same schema content, such as all the tasks of a connector after a rebalance,
+ * parse the schema and build its plan and Connect conversion only once. The generators are still
+ * built by every lane, since they hold the lane's random source and iteration state. Entries are
+ * reference counted and dropped as soon as the last task using them stops.
+ */
+final class SchemaCache {
+
+  private static final Map<String, Entry> ENTRIES = new HashMap<>();
+
+  /**
+   * The parsed schema, its generation plan and the plan converting its records to Connect data.
+   * All three are immutable and safe to use from any number of tasks and threads.
+   */
+  static final class Entry {
+    private final String contentHash;
+    private final org.apache.avro.Schema avroSchema;
+    private final GenerationPlan plan;
+    private final ConversionPlan conversionPlan;
+    private int references;
+
+    private Entry(String contentHash, org.apache.avro.Schema avroSchema) {
+      this.contentHash = contentHash;
+      this.avroSchema = avroSchema;
+      this.plan = GenerationPlan.of(avroSchema);
+      this.conversionPlan = new ConversionPlan(avroSchema);
+    }
+
+    org.apache.avro.Schema avroSchema() {
+      return avroSchema;
+    }
+
+    GenerationPlan plan() {
+      return plan;
+    }
+
+    Schema connectSchema() {
+      return conversionPlan.schema();
+    }
+
+    ConversionPlan conversionPlan() {
+      return conversionPlan;
+    }
+  }
+
+  private SchemaCache() {
+  }
+
+  /**
+   * Get the entry for a schema file's content, parsing it if no task holds it yet. Every call must
+   * be matched by a {@link #release(Entry)}.
+   */
+  static Entry acquire(String schemaContent) {
+    return acquire(schemaContent, null);
+  }
+
+  /**
+   * Get the entry for a schema that is already parsed, keyed by its compact form, which is the
+   * content tasks later acquire it with.
+   */
+  static Entry acquire(org.apache.avro.Schema schema) {
+    return acquire(schema.toString(), schema);
+  }
+
+  private static synchronized Entry acquire(
+      String schemaContent, org.apache.avro.Schema parsedSchema
+  ) {
+    final String contentHash = hash(schemaContent);
+    Entry entry = ENTRIES.get(contentHash);
+    if (entry == null) {
+      entry = new Entry(contentHash, parsedSchema != null
+                                     ? parsedSchema
+                                     : new org.apache.avro.Schema.Parser().parse(schemaContent));
+      ENTRIES.put(contentHash, entry);
+    }
+    entry.references++;
+    return entry;
+  }
+
+  static synchronized void release(Entry entry) {
+    if (--entry.references == 0) {
+      ENTRIES.remove(entry.contentHash);
+    }
+  }
+
+  static synchronized int size() {
+    return ENTRIES.size();
+  }
+
+  private static String hash(String schemaContent) {
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(
+          schemaContent.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new ConnectException("SHA-256 is not available", e);
+    }
+    final StringBuilder hex = new StringBuilder(digest.length * 2);
+    for (byte b : digest) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Resolves the schema ID written ahead of {@code confluent-avro} values, once when a task starts,
+ * so that generating records never talks to Schema Registry. The schema client is deliberately
+ * not a dependency; registering is a single REST call.
+ */
+final class SchemaRegistration {
+
+  static final String CONTENT_TYPE = "application/vnd.schemaregistry.v1+json";
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private static final int TIMEOUT_MS = 30000;
+
+  private SchemaRegistration() {
+  }
+
+  /**
+   * Register {@code schema} under {@code subject}, or look up its ID if it is already registered.
+   */
+  static int register(String registryUrl, String subject, Schema schema) {
+    final String baseUrl = registryUrl.endsWith("/")
+                           ? registryUrl.substring(0, registryUrl.length() - 1) : registryUrl;
+    try {
+      final URL url = new URL(
+          baseUrl + "/subjects/" + URLEncoder.encode(subject, "UTF-8") + "/versions"
+      );
+      final ObjectNode request = JSON.createObjectNode();
+      request.put("schema", withoutAnnotations(schema));
+      final byte[] body = JSON.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+
+      final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      try {
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+        connection.setRequestProperty("Accept", CONTENT_TYPE);
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body);
+        }
+        final int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+          throw new ConnectException(String.format(
+              "Unable to register the schema under subject '%s': HTTP %d %s",
+              subject, status, errorBody(connection)
+          ));
+        }
+        final JsonNode response = JSON.readTree(
+            DatagenTask.readFully(connection.getInputStream()));
+        if (!response.path("id").isIntegralNumber()) {
+          throw new ConnectException("Schema Registry response has no schema ID: " + response);
+        }
+        return response.get("id").asInt();
+      } finally {
+        connection.disconnect();
+      }
+    } catch (IOException e) {
+      throw new ConnectException("Unable to register the schema with " + registryUrl, e);
+    }
+  }
+
+  /**
+   * The schema without its {@code arg.properties} annotations, which only tell the generator how
+   * to make up values, so that tuning them never registers a new version of the schema.
+   */
+  private static String withoutAnnotations(Schema schema) throws IOException {
+    final JsonNode tree = JSON.readTree(schema.toString());
+    removeAnnotations(tree);
+    return JSON.writeValueAsString(tree);
+  }
+
+  private static void removeAnnotations(JsonNode node) {
+    if (node.isObject()) {
+      ((ObjectNode) node).remove(GenerationPlan.ARG_PROPERTIES_PROP);
+    }
+    for (JsonNode child : node) {
+      removeAnnotations(child);
+    }
+  }
+
+  private static String errorBody(HttpURLConnection connection) throws IOException {
+    final InputStream in = connection.getErrorStream();
+    return in == null ? "" : DatagenTask.readFully(in);
+  }
+
+  /**
+   * A non-negative ID derived from the schema's parsing form, for runs that never need to read
+   * the data back with a deserializer.
+   */
+  static int localId(Schema schema) {
+    return (int) (SchemaNormalization.parsingFingerprint64(schema) & Integer.MAX_VALUE);
+  }
+}
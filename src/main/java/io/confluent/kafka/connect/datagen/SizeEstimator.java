@@ -0,0 +1,80 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+
+/**
+ * Cheap approximation of the serialized size of generated records. The estimate counts the raw
+ * payload of every value (string characters, byte arrays and fixed-width primitives) and ignores
+ * any framing added by the converter, so it is only meant for batching and pacing decisions.
+ */
+final class SizeEstimator {
+
+  private SizeEstimator() {
+  }
+
+  static long estimate(SourceRecord record) {
+    return estimate(record.key()) + estimate(record.value());
+  }
+
+  static long estimate(Object value) {
+    if (value == null) {
+      return 0L;
+    } else if (value instanceof String) {
+      return ((String) value).length();
+    } else if (value instanceof Long || value instanceof Double) {
+      return 8L;
+    } else if (value instanceof Integer || value instanceof Float) {
+      return 4L;
+    } else if (value instanceof Short) {
+      return 2L;
+    } else if (value instanceof Boolean || value instanceof Byte) {
+      return 1L;
+    } else if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    } else if (value instanceof ByteBuffer) {
+      return ((ByteBuffer) value).remaining();
+    } else if (value instanceof Struct) {
+      final Struct struct = (Struct) value;
+      long size = 0L;
+      for (Field field : struct.schema().fields()) {
+        size += estimate(struct.get(field));
+      }
+      return size;
+    } else if (value instanceof Collection) {
+      long size = 0L;
+      for (Object element : (Collection<?>) value) {
+        size += estimate(element);
+      }
+      return size;
+    } else if (value instanceof Map) {
+      long size = 0L;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        size += estimate(entry.getKey()) + estimate(entry.getValue());
+      }
+      return size;
+    }
+    return value.toString().length();
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer queue backed by a preallocated array whose size is
+ * rounded up to a power of two. Each side caches its last view of the other side's index so that
+ * it only reads the shared counter when the buffer looks full or empty.
+ */
+final class SpscRingBuffer<T> {
+
+  private final Object[] buffer;
+  private final int mask;
+  // Next slot to read, only written by the consumer
+  private final AtomicLong head = new AtomicLong();
+  // Next slot to write, only written by the producer
+  private final AtomicLong tail = new AtomicLong();
+  private long producerCachedHead;
+  private long consumerCachedTail;
+
+  SpscRingBuffer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+    }
+    final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.buffer = new Object[size];
+    this.mask = size - 1;
+  }
+
+  int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * Add an element, to be called by the producer thread only.
+   *
+   * @return false if the buffer is full
+   */
+  boolean offer(T element) {
+    final long currentTail = tail.get();
+    if (currentTail - producerCachedHead >= buffer.length) {
+      producerCachedHead = head.get();
+      if (currentTail - producerCachedHead >= buffer.length) {
+        return false;
+      }
+    }
+    buffer[(int) currentTail & mask] = element;
+    // Ordered store publishes the element before the new tail
+    tail.lazySet(currentTail + 1);
+    return true;
+  }
+
+  /**
+   * Remove the oldest element, to be called by the consumer thread only.
+   *
+   * @return null if the buffer is empty
+   */
+  @SuppressWarnings("unchecked")
+  T poll() {
+    final long currentHead = head.get();
+    if (currentHead >= consumerCachedTail) {
+      consumerCachedTail = tail.get();
+      if (currentHead >= consumerCachedTail) {
+        return null;
+      }
+    }
+    final int slot = (int) currentHead & mask;
+    final T element = (T) buffer[slot];
+    buffer[slot] = null;
+    head.lazySet(currentHead + 1);
+    return element;
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+/**
+ * Serializes generated Avro records straight to bytes, skipping the Connect data and converter
+ * round trip. Every record is encoded into the same reusable buffer, so instances are not
+ * thread-safe.
+ */
+class ValueEncoder {
+
+  static final byte CONFLUENT_MAGIC_BYTE = 0x0;
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final String format;
+  private final int schemaId;
+  private final GenericDatumWriter<GenericRecord> writer;
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+  private BinaryEncoder encoder;
+
+  /**
+   * @param format one of the {@code value.format} byte formats
+   * @param schema the schema the records are written with
+   * @param schemaId the schema ID written ahead of {@code confluent-avro} records
+   */
+  ValueEncoder(String format, Schema schema, int schemaId) {
+    this.format = format;
+    this.schemaId = schemaId;
+    this.writer = new GenericDatumWriter<>(schema);
+  }
+
+  byte[] encode(GenericRecord record) {
+    buffer.reset();
+    try {
+      switch (format) {
+        case DatagenConnectorConfig.VALUE_FORMAT_CONFLUENT_AVRO:
+          buffer.write(CONFLUENT_MAGIC_BYTE);
+          buffer.write(schemaId >>> 24);
+          buffer.write(schemaId >>> 16);
+          buffer.write(schemaId >>> 8);
+          buffer.write(schemaId);
+          writeAvro(record);
+          break;
+        case DatagenConnectorConfig.VALUE_FORMAT_AVRO_BINARY:
+          writeAvro(record);
+          break;
+        case DatagenConnectorConfig.VALUE_FORMAT_JSON:
+          try (JsonGenerator json = JSON_FACTORY.createJsonGenerator(buffer, JsonEncoding.UTF8)) {
+            writeJson(json, record);
+          }
+          break;
+        default:
+          throw new ConnectException("Unsupported value format '" + format + "'");
+      }
+    } catch (IOException e) {
+      throw new ConnectException("Unable to encode the generated record", e);
+    }
+    return buffer.toByteArray();
+  }
+
+  private void writeAvro(GenericRecord record) throws IOException {
+    encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+    writer.write(record, encoder);
+    encoder.flush();
+  }
+
+  /**
+   * Write a value as plain JSON, the way {@code JsonConverter} writes it without schemas: union
+   * values are written as the value itself, and bytes are Base64 encoded.
+   */
+  private static void writeJson(JsonGenerator json, Object value) throws IOException {
+    if (value == null) {
+      json.writeNull();
+    } else if (value instanceof IndexedRecord) {
+      final IndexedRecord record = (IndexedRecord) value;
+      json.writeStartObject();
+      for (Schema.Field field : record.getSchema().getFields()) {
+        json.writeFieldName(field.name());
+        writeJson(json, record.get(field.pos()));
+      }
+      json.writeEndObject();
+    } else if (value instanceof CharSequence) {
+      json.writeString(value.toString());
+    } else if (value instanceof Integer) {
+      json.writeNumber((Integer) value);
+    } else if (value instanceof Long) {
+      json.writeNumber((Long) value);
+    } else if (value instanceof Float) {
+      json.writeNumber((Float) value);
+    } else if (value instanceof Double) {
+      json.writeNumber((Double) value);
+    } else if (value instanceof Boolean) {
+      json.writeBoolean((Boolean) value);
+    } else if (value instanceof List) {
+      json.writeStartArray();
+      for (Object element : (List<?>) value) {
+        writeJson(json, element);
+      }
+      json.writeEndArray();
+    } else if (value instanceof Map) {
+      json.writeStartObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        json.writeFieldName(entry.getKey().toString());
+        writeJson(json, entry.getValue());
+      }
+      json.writeEndObject();
+    } else if (value instanceof ByteBuffer) {
+      final ByteBuffer bytes = ((ByteBuffer) value).duplicate();
+      final byte[] data = new byte[bytes.remaining()];
+      bytes.get(data);
+      json.writeBinary(data);
+    } else if (value instanceof GenericFixed) {
+      json.writeBinary(((GenericFixed) value).bytes());
+    } else {
+      // Enum symbols and anything else are written as their string form
+      json.writeString(value.toString());
+    }
+  }
+}
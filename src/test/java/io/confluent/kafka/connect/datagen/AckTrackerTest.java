@@ -0,0 +1,63 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.kafka.connect.datagen;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AckTrackerTest {
+
+  @Test
+  public void shouldTimeAcksByPosition() {
+    AckTracker tracker = new AckTracker(8);
+    for (long position = 0; position < 4; position++) {
+      tracker.sent(position, position * 1000L);
+    }
+    assertEquals(4L, tracker.inFlight());
+
+    // Acknowledged out of order, each against its own stamp
+    tracker.acked(2L, 5000L);
+    tracker.acked(0L, 5000L);
+    assertEquals(2L, tracker.inFlight());
+    assertEquals(2L, tracker.acked());
+
+    LatencyHistogram latency = tracker.getAndResetLatency();
+    assertEquals(2L, latency.count());
+    assertEquals(5000L, latency.max());
+    // Within the histogram's precision
+    assertEquals(3000.0, latency.percentile(50.0), 3000.0 / 64);
+    assertEquals(0L, tracker.getAndResetLatency().count());
+  }
+
+  @Test
+  public void shouldCountAcksOfOverwrittenStampsAsUntimed() {
+    AckTracker tracker = new AckTracker(5);
+    assertEquals(8, tracker.capacity());
+    for (long position = 0; position < 10; position++) {
+      tracker.sent(position, 0L);
+    }
+    // Positions 0 and 1 share their slots with 8 and 9
+    tracker.acked(0L, 100L);
+    tracker.acked(9L, 100L);
+    assertEquals(1L, tracker.untimed());
+    assertEquals(2L, tracker.acked());
+    assertEquals(8L, tracker.inFlight());
+    assertEquals(1L, tracker.getAndResetLatency().count());
+  }
+}
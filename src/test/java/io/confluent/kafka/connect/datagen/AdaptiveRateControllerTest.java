@@ -0,0 +1,130 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveRateControllerTest {
+
+  private static final long ROUND = AdaptiveRateController.MIN_ROUND_NANOS;
+
+  private long now;
+  private long position;
+  private AckTracker acks;
+  private RateLimiter limiter;
+
+  @Before
+  public void setUp() {
+    now = TimeUnit.HOURS.toNanos(1);
+    position = 0L;
+    acks = new AckTracker(1024);
+    limiter = new RateLimiter(1, () -> now);
+  }
+
+  @Test
+  public void shouldDoubleUntilCongestedThenIncreaseAdditively() {
+    AdaptiveRateController controller = newController(1000L, 0L);
+    assertEquals(1000.0, controller.rate(), 0.0);
+
+    // Every round acknowledges what the rate allowed, at a millisecond each
+    round(100, TimeUnit.MILLISECONDS.toNanos(1));
+    assertTrue(controller.adjust(now));
+    assertEquals(2000.0, controller.rate(), 0.0);
+    round(200, TimeUnit.MILLISECONDS.toNanos(1));
+    assertTrue(controller.adjust(now));
+    assertEquals(4000.0, controller.rate(), 0.0);
+
+    // Only 400 records acknowledged and 100 more stuck, which is the in-flight limit
+    send(500);
+    ack(400, TimeUnit.MILLISECONDS.toNanos(1));
+    now += ROUND;
+    assertTrue(controller.adjust(now));
+    assertEquals(2000.0, controller.rate(), 0.0);
+
+    // The next round only ends once the stuck records are acknowledged
+    now += ROUND;
+    assertFalse(controller.adjust(now));
+    ack(100, TimeUnit.MILLISECONDS.toNanos(1));
+    assertTrue(controller.adjust(now));
+    // A sixteenth of the rate congestion was seen at
+    assertEquals(2250.0, controller.rate(), 0.0);
+  }
+
+  @Test
+  public void shouldBackOffWhenAcksExceedTheLatencyTarget() {
+    AdaptiveRateController controller =
+        newController(1000L, TimeUnit.MILLISECONDS.toNanos(50));
+    round(100, TimeUnit.MILLISECONDS.toNanos(80));
+    assertTrue(controller.adjust(now));
+    assertEquals(500.0, controller.rate(), 0.0);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), limiter.nanosPerPermit(), 1e-6);
+  }
+
+  @Test
+  public void shouldNotIncreaseWhenGenerationCannotKeepUp() {
+    AdaptiveRateController controller = newController(1000L, 0L);
+    // A tenth of what the rate allows
+    round(10, TimeUnit.MILLISECONDS.toNanos(1));
+    assertFalse(controller.adjust(now));
+    assertEquals(1000.0, controller.rate(), 0.0);
+  }
+
+  @Test
+  public void shouldLeaveRoomUpToTheInFlightLimit() {
+    AdaptiveRateController controller = newController(1000L, 0L);
+    send(60);
+    assertEquals(40L, controller.room());
+    send(40);
+    assertEquals(0L, controller.room());
+    ack(1, 0L);
+    assertEquals(1L, controller.room());
+  }
+
+  private AdaptiveRateController newController(long initialRate, long latencyTargetNanos) {
+    return new AdaptiveRateController(limiter, acks, initialRate, 100L, latencyTargetNanos, now);
+  }
+
+  private void round(int records, long latencyNanos) {
+    send(records);
+    ack(records, latencyNanos);
+    now += ROUND;
+  }
+
+  private void send(int records) {
+    for (int i = 0; i < records; i++) {
+      acks.sent(position++, now);
+    }
+  }
+
+  /**
+   * Acknowledge the oldest {@code records} records still in flight.
+   */
+  private void ack(int records, long latencyNanos) {
+    final long first = acks.acked();
+    for (long p = first; p < first + records; p++) {
+      acks.acked(p, now + latencyNanos);
+    }
+  }
+}
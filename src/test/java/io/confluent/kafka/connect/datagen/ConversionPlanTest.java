@@ -0,0 +1,95 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Random;
+
+import io.confluent.avro.random.generator.Generator;
+import io.confluent.connect.avro.AvroData;
+import org.apache.avro.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConversionPlanTest {
+
+  private static final int NUM_RECORDS = 100;
+
+  private static final String MIXED_SCHEMA = "{\"type\": \"record\", \"name\": \"mixed\", "
+      + "\"fields\": ["
+      + "{\"name\": \"id\", \"type\": \"long\"}, "
+      + "{\"name\": \"name\", \"type\": [\"null\", \"string\"]}, "
+      + "{\"name\": \"suit\", \"type\": {\"type\": \"enum\", \"name\": \"suit\", "
+      + "\"symbols\": [\"HEARTS\", \"SPADES\"]}}, "
+      + "{\"name\": \"choice\", \"type\": [\"int\", \"string\", \"null\"]}, "
+      + "{\"name\": \"tags\", \"type\": {\"type\": \"map\", \"values\": \"int\"}}, "
+      + "{\"name\": \"data\", \"type\": \"bytes\"}, "
+      + "{\"name\": \"nested\", \"type\": [\"null\", {\"type\": \"record\", \"name\": \"inner\", "
+      + "\"fields\": [{\"name\": \"values\", \"type\": {\"type\": \"array\", "
+      + "\"items\": \"float\"}}]}]}"
+      + "]}";
+
+  @Test
+  public void shouldConvertQuickstartsLikeAvroData() throws Exception {
+    for (DatagenTask.Quickstart quickstart : DatagenTask.Quickstart.values()) {
+      assertConvertsLikeAvroData(new Schema.Parser().parse(
+          ConversionPlanTest.class.getClassLoader().getResourceAsStream(
+              quickstart.getSchemaFilename())
+      ));
+    }
+  }
+
+  @Test
+  public void shouldConvertMixedTypesLikeAvroData() {
+    assertConvertsLikeAvroData(new Schema.Parser().parse(MIXED_SCHEMA));
+  }
+
+  @Test
+  public void shouldReadKeyField() {
+    Schema schema = new Schema.Parser().parse(MIXED_SCHEMA);
+    ConversionPlan plan = new ConversionPlan(schema);
+    ConversionPlan.ValueConverter idReader = plan.fieldReader("id");
+    ConversionPlan.ValueConverter suitReader = plan.fieldReader("suit");
+    Generator generator = new Generator(schema, new Random(42L));
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Object record = generator.generate();
+      Struct value = (Struct) plan.convert(record);
+      assertEquals(value.get("id"), idReader.convert(record));
+      assertEquals(value.get("suit"), suitReader.convert(record));
+    }
+  }
+
+  @Test(expected = ConnectException.class)
+  public void shouldRejectUnknownKeyField() {
+    new ConversionPlan(new Schema.Parser().parse(MIXED_SCHEMA))
+        .fieldReader("missing");
+  }
+
+  private static void assertConvertsLikeAvroData(Schema schema) {
+    AvroData avroData = new AvroData(1);
+    ConversionPlan plan = new ConversionPlan(schema);
+    assertEquals(avroData.toConnectSchema(schema), plan.schema());
+
+    Generator generator = new Generator(GenerationPlan.of(schema).schema(), new Random(42L));
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Object record = generator.generate();
+      assertEquals(avroData.toConnectData(schema, record).value(), plan.convert(record));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CounterRandomTest {
+
+  private static final long SEED = 42L;
+
+  @Test
+  public void shouldReplayRecordAfterRepositioning() {
+    CounterRandom random = new CounterRandom(SEED, 0);
+    random.position(17);
+    long[] first = draw(random);
+    random.position(3);
+    draw(random);
+    random.position(17);
+    assertArrayEquals(first, draw(random));
+  }
+
+  @Test
+  public void shouldDependOnlyOnSeedTaskAndRecord() {
+    CounterRandom random = new CounterRandom(SEED, 1);
+    CounterRandom other = new CounterRandom(SEED, 1);
+    random.position(1000);
+    other.position(999);
+    draw(other);
+    other.position(1000);
+    assertArrayEquals(draw(random), draw(other));
+  }
+
+  @Test
+  public void shouldProduceDifferentStreamsPerTaskAndRecord() {
+    CounterRandom random = new CounterRandom(SEED, 0);
+    random.position(5);
+    long[] values = draw(random);
+    random.position(6);
+    assertFalse(java.util.Arrays.equals(values, draw(random)));
+
+    CounterRandom other = new CounterRandom(SEED, 1);
+    other.position(5);
+    assertFalse(java.util.Arrays.equals(values, draw(other)));
+  }
+
+  private static long[] draw(CounterRandom random) {
+    return new long[]{random.nextLong(), random.nextInt(), random.nextInt(100),
+                      Double.doubleToLongBits(random.nextDouble()), random.nextBoolean() ? 1 : 0};
+  }
+}
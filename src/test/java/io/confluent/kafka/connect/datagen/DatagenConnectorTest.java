@@ -16,10 +16,14 @@
 
 package io.confluent.kafka.connect.datagen;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.avro.Schema;
+import org.apache.kafka.common.config.ConfigException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -63,13 +67,118 @@ public class DatagenConnectorTest {
     }
   }
 
+  @Test
+  public void shouldSplitIterationsAndThroughputAcrossTasks() {
+    config.put(DatagenConnectorConfig.THROUGHPUT_RECORDS_CONF, "1003");
+    connector.start(config);
+
+    List<Map<String, String>> taskConfigs = connector.taskConfigs(8);
+    assertEquals(8, taskConfigs.size());
+    assertEquals(NUM_MESSAGES, sum(taskConfigs, DatagenConnectorConfig.ITERATIONS_CONF));
+    assertEquals(1003, sum(taskConfigs, DatagenConnectorConfig.THROUGHPUT_RECORDS_CONF));
+    assertEquals("13", taskConfigs.get(0).get(DatagenConnectorConfig.ITERATIONS_CONF));
+    assertEquals("12", taskConfigs.get(7).get(DatagenConnectorConfig.ITERATIONS_CONF));
+    assertEquals("126", taskConfigs.get(0).get(DatagenConnectorConfig.THROUGHPUT_RECORDS_CONF));
+    assertEquals("125", taskConfigs.get(7).get(DatagenConnectorConfig.THROUGHPUT_RECORDS_CONF));
+  }
+
+  @Test
+  public void shouldNotCreateTasksWithoutAnyIterations() {
+    config.put(DatagenConnectorConfig.ITERATIONS_CONF, "3");
+    connector.start(config);
+
+    List<Map<String, String>> taskConfigs = connector.taskConfigs(8);
+    assertEquals(3, taskConfigs.size());
+    for (Map<String, String> taskConfig : taskConfigs) {
+      assertEquals("1", taskConfig.get(DatagenConnectorConfig.ITERATIONS_CONF));
+      assertEquals("3", taskConfig.get(DatagenTaskConfig.TASK_COUNT_CONF));
+    }
+  }
+
+  @Test
+  public void shouldLeaveUnlimitedIterationsUnlimited() {
+    config.put(DatagenConnectorConfig.ITERATIONS_CONF, "-1");
+    connector.start(config);
+
+    for (Map<String, String> taskConfig : connector.taskConfigs(4)) {
+      assertEquals("-1", taskConfig.get(DatagenConnectorConfig.ITERATIONS_CONF));
+    }
+  }
+
+  @Test(expected = ConfigException.class)
+  public void shouldRejectPipelineCombinedWithGeneratorThreads() {
+    config.put(DatagenConnectorConfig.PIPELINE_THREADS_CONF, "2");
+    config.put(DatagenConnectorConfig.GENERATOR_THREADS_CONF, "2");
+    connector.start(config);
+  }
+
+  @Test(expected = ConfigException.class)
+  public void shouldRejectDeltaFieldsWithInvalidProbability() {
+    config.put(DatagenConnectorConfig.DELTA_FIELDS_CONF, "price:1.5");
+    connector.start(config);
+  }
+
+  @Test(expected = ConfigException.class)
+  public void shouldRejectMissingSchemaFile() {
+    config.remove(DatagenConnectorConfig.QUICKSTART_CONF);
+    config.put(DatagenConnectorConfig.SCHEMA_FILENAME_CONF, "/does/not/exist.avro");
+    connector.start(config);
+  }
+
+  @Test(expected = ConfigException.class)
+  public void shouldRejectUnknownKeyField() throws Exception {
+    config.remove(DatagenConnectorConfig.QUICKSTART_CONF);
+    config.put(
+        DatagenConnectorConfig.SCHEMA_FILENAME_CONF,
+        new File(getClass().getClassLoader().getResource(
+            DatagenTask.Quickstart.USERS.getSchemaFilename()).toURI()).getAbsolutePath()
+    );
+    config.put(DatagenConnectorConfig.SCHEMA_KEYFIELD_CONF, "missing");
+    connector.start(config);
+  }
+
   protected void assertTaskConfigs(int maxTasks) {
     List<Map<String, String>> taskConfigs = connector.taskConfigs(maxTasks);
     assertEquals(maxTasks, taskConfigs.size());
-    // All task configs should match the connector config
-    for (Map<String, String> taskConfig : taskConfigs) {
+    // Task configs should match the connector config, apart from the task's own share
+    for (int i = 0; i < taskConfigs.size(); i++) {
+      Map<String, String> taskConfig = new HashMap<>(taskConfigs.get(i));
+      assertEquals(Integer.toString(i), taskConfig.remove(DatagenTaskConfig.TASK_ID_CONF));
+      assertEquals(Integer.toString(maxTasks), taskConfig.remove(DatagenTaskConfig.TASK_COUNT_CONF));
+      assertEquals(
+          loadQuickstartSchema(DatagenTask.Quickstart.USERS),
+          new Schema.Parser().parse(taskConfig.remove(DatagenTaskConfig.TASK_SCHEMA_CONF))
+      );
+      assertEquals(
+          DatagenTask.Quickstart.USERS.getSchemaKeyField(),
+          taskConfig.remove(DatagenTaskConfig.TASK_SCHEMA_KEYFIELD_CONF)
+      );
+      taskConfig.put(
+          DatagenConnectorConfig.ITERATIONS_CONF,
+          config.get(DatagenConnectorConfig.ITERATIONS_CONF)
+      );
       assertEquals(config, taskConfig);
     }
+    if (maxTasks > 0) {
+      assertEquals(NUM_MESSAGES, sum(taskConfigs, DatagenConnectorConfig.ITERATIONS_CONF));
+    }
+  }
+
+  private Schema loadQuickstartSchema(DatagenTask.Quickstart quickstart) {
+    try {
+      return new Schema.Parser().parse(
+          getClass().getClassLoader().getResourceAsStream(quickstart.getSchemaFilename()));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private long sum(List<Map<String, String>> taskConfigs, String key) {
+    long total = 0;
+    for (Map<String, String> taskConfig : taskConfigs) {
+      total += Long.parseLong(taskConfig.get(key));
+    }
+    return total;
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.storage.Converter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DatagenRunnerTest {
+
+  private static final AtomicLong CONVERTED = new AtomicLong();
+
+  private Map<String, String> props;
+  private ByteArrayOutputStream output;
+
+  public static class CountingConverter implements Converter {
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+      assertEquals("true", configs.get("counting"));
+    }
+
+    @Override
+    public byte[] fromConnectData(String topic, Schema schema, Object value) {
+      CONVERTED.incrementAndGet();
+      return new byte[10];
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    CONVERTED.set(0L);
+    props = new HashMap<>();
+    props.put(DatagenConnectorConfig.KAFKA_TOPIC_CONF, "runner");
+    props.put(DatagenConnectorConfig.QUICKSTART_CONF, "orders");
+    props.put(DatagenConnectorConfig.MAXINTERVAL_CONF, "0");
+    props.put(DatagenConnectorConfig.ITERATIONS_CONF, "1000");
+    props.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    props.put(DatagenRunner.TASKS_MAX_CONF, "3");
+    props.put(DatagenRunner.REPORT_INTERVAL_MS_CONF, "10");
+    output = new ByteArrayOutputStream();
+  }
+
+  @Test
+  public void shouldGenerateAllIterationsAcrossTasks() throws Exception {
+    long records = run();
+    assertEquals(1000L, records);
+    assertTrue(output().startsWith("Running 3 task(s)"));
+    assertTrue(output().contains("Done: 1000 records"));
+    assertEquals(0L, CONVERTED.get());
+  }
+
+  @Test
+  public void shouldRunRecordsThroughConverter() throws Exception {
+    props.put(DatagenRunner.VALUE_CONVERTER_CONF, CountingConverter.class.getName());
+    props.put(DatagenRunner.VALUE_CONVERTER_CONF + ".counting", "true");
+    assertEquals(1000L, run());
+    assertEquals(1000L, CONVERTED.get());
+  }
+
+  @Test
+  public void shouldStopAfterDuration() throws Exception {
+    props.remove(DatagenConnectorConfig.ITERATIONS_CONF);
+    props.put(DatagenRunner.DURATION_MS_CONF, "200");
+    assertTrue(run() > 0);
+    assertTrue(output().contains("records/s"));
+  }
+
+  private long run() throws InterruptedException {
+    return new DatagenRunner(props).run(new PrintStream(output, true));
+  }
+
+  private String output() {
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DatagenTaskMetricsTest {
+
+  private long now = 0L;
+
+  @Test
+  public void shouldSampleRatesAtMostOncePerWindow() {
+    DatagenTaskMetrics metrics = new DatagenTaskMetrics("test", 0, 1000L, 0L, 60000L, () -> now);
+    metrics.recordBatch(100, 2000L, 0L);
+    now += TimeUnit.MILLISECONDS.toNanos(500);
+    assertEquals(0.0, metrics.getRecordsPerSec(), 0.0);
+
+    now += TimeUnit.MILLISECONDS.toNanos(500);
+    assertEquals(100.0, metrics.getRecordsPerSec(), 1e-9);
+    assertEquals(2000.0, metrics.getBytesPerSec(), 1e-9);
+
+    // Reading again within the window does not start a new one
+    metrics.recordBatch(100, 2000L, 0L);
+    assertEquals(100.0, metrics.getRecordsPerSec(), 1e-9);
+    now += TimeUnit.SECONDS.toNanos(2);
+    assertEquals(50.0, metrics.getRecordsPerSec(), 1e-9);
+    assertEquals(1000L, metrics.getTargetRecordsPerSec());
+  }
+
+  @Test
+  public void shouldSplitPollTime() {
+    DatagenTaskMetrics metrics = new DatagenTaskMetrics("test", 0, 0L, 0L, 60000L, () -> now);
+    long ms = TimeUnit.MILLISECONDS.toNanos(1);
+    metrics.pollStarted(0L);
+    metrics.recordSleep(10 * ms);
+    metrics.recordBatch(10, 100L, 5 * ms);
+    metrics.pollFinished(15 * ms);
+    metrics.pollStarted(45 * ms);
+    metrics.recordBatch(30, 300L, 5 * ms);
+    metrics.recordConversion(2 * ms);
+    metrics.pollFinished(50 * ms);
+
+    assertEquals(2L, metrics.getPolls());
+    assertEquals(40L, metrics.getRecordsGenerated());
+    assertEquals(400L, metrics.getBytesGenerated());
+    assertEquals(10L, metrics.getSleepTimeMs());
+    assertEquals(10L, metrics.getGenerateTimeMs());
+    assertEquals(2L, metrics.getConvertTimeMs());
+    assertEquals(30L, metrics.getOutsidePollTimeMs());
+    assertEquals(10L, metrics.getBatchSizeP50());
+    assertEquals(30L, metrics.getBatchSizeMax());
+  }
+
+  @Test
+  public void shouldReportLatencyPercentilesPerInterval() {
+    // 1000 records/s, so a record is due every millisecond
+    DatagenTaskMetrics metrics = new DatagenTaskMetrics("test", 0, 1000L, 0L, 1000L, () -> now);
+    long ms = TimeUnit.MILLISECONDS.toNanos(1);
+    for (int i = 0; i < 99; i++) {
+      metrics.recordGeneration(10000L, false);
+    }
+    // A 10ms stall also held up the 9 records due while it lasted
+    metrics.recordGeneration(10 * ms, false);
+    // A batch of 100 records handed out 3ms late, of which only the first 3 were due yet
+    metrics.recordLateness(3 * ms, ms, 100);
+    metrics.pollFinished(500 * ms);
+    assertEquals(0L, metrics.getGenerateLatencyMaxUs());
+
+    metrics.pollFinished(1000 * ms);
+    assertEquals(10L, metrics.getGenerateLatencyP50Us());
+    assertTrue(metrics.getGenerateLatencyP99Us() >= 1000L);
+    assertEquals(10000L, metrics.getGenerateLatencyMaxUs());
+    assertEquals(3000L, metrics.getScheduleLatenessMaxUs());
+    assertEquals(0L, metrics.getScheduleLatenessP50Us());
+    assertEquals(2000.0, metrics.getScheduleLatenessP99Us(), 2000.0 / 64);
+
+    // The next interval starts empty
+    metrics.pollFinished(2000 * ms);
+    assertEquals(0L, metrics.getGenerateLatencyMaxUs());
+  }
+
+  @Test
+  public void shouldNotCorrectRecordsHandedOverByOtherThreads() {
+    DatagenTaskMetrics metrics = new DatagenTaskMetrics("test", 0, 1000L, 0L, 1000L, () -> now);
+    long ms = TimeUnit.MILLISECONDS.toNanos(1);
+    // Waiting 10ms for a batch of 100 records generated by other threads
+    metrics.recordGeneration(10 * ms, true);
+    for (int i = 0; i < 99; i++) {
+      metrics.recordGeneration(10000L, true);
+    }
+    metrics.pollFinished(1000 * ms);
+    assertEquals(10L, metrics.getGenerateLatencyP99Us());
+    assertEquals(10000L, metrics.getGenerateLatencyMaxUs());
+  }
+
+  @Test
+  public void shouldReportAckLatencyPerInterval() {
+    DatagenTaskMetrics metrics = new DatagenTaskMetrics("test", 0, 0L, 0L, 1000L, () -> now);
+    long ms = TimeUnit.MILLISECONDS.toNanos(1);
+    for (long position = 0; position < 3; position++) {
+      metrics.recordSent(position, 0L);
+    }
+    metrics.recordAck(0L, 2 * ms);
+    metrics.recordAck(1L, 4 * ms);
+    assertEquals(1L, metrics.getInFlightRecords());
+    assertEquals(0L, metrics.getAckLatencyMaxUs());
+
+    metrics.pollFinished(1000 * ms);
+    assertEquals(2000.0, metrics.getAckLatencyP50Us(), 2000.0 / 64);
+    assertEquals(4000L, metrics.getAckLatencyMaxUs());
+    assertEquals(2L, metrics.getAckedRecords());
+    assertEquals(0L, metrics.getUntimedAcks());
+  }
+
+  @Test
+  public void shouldRegisterAndUnregisterMBean() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = DatagenTaskMetrics.objectName("metrics-test", 3);
+    DatagenTaskMetrics metrics = new DatagenTaskMetrics("metrics-test", 3, 0L, 0L, 60000L);
+    metrics.register();
+    metrics.recordBatch(7, 70L, 0L);
+    assertEquals(7L, server.getAttribute(name, "RecordsGenerated"));
+
+    // A task started again without being stopped takes over the name
+    DatagenTaskMetrics restarted = new DatagenTaskMetrics("metrics-test", 3, 0L, 0L, 60000L);
+    restarted.register();
+    assertEquals(0L, server.getAttribute(name, "RecordsGenerated"));
+
+    // Stopping the earlier run leaves the MBean of the running task alone
+    metrics.unregister();
+    assertTrue(server.isRegistered(name));
+    restarted.recordBatch(3, 30L, 0L);
+    assertEquals(3L, server.getAttribute(name, "RecordsGenerated"));
+
+    restarted.unregister();
+    assertFalse(server.isRegistered(name));
+    assertTrue(name.getKeyProperty("connector").contains("metrics-test"));
+  }
+}
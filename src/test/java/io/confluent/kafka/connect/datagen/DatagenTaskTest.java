@@ -17,27 +17,48 @@
 package io.confluent.kafka.connect.datagen;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import io.confluent.avro.random.generator.Generator;
 import io.confluent.connect.avro.AvroData;
 
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.source.SourceTaskContext;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -49,11 +70,24 @@ public class DatagenTaskTest {
 
   private static final AvroData AVRO_DATA = new AvroData(20);
 
+  // Besides an iteration that advances once per record, one that wraps around and one that
+  // advances twice per record
+  private static final String ITERATIONS_SCHEMA =
+      "{\"type\": \"record\", \"name\": \"counters\", "
+      + "\"fields\": [{\"name\": \"id\", \"type\": {\"type\": \"long\", \"arg.properties\": "
+      + "{\"iteration\": {\"start\": 0}}}}, {\"name\": \"cycle\", \"type\": {\"type\": \"int\", "
+      + "\"arg.properties\": {\"iteration\": {\"start\": 0, \"restart\": 7}}}}, "
+      + "{\"name\": \"pair\", \"type\": {\"type\": \"array\", \"arg.properties\": "
+      + "{\"length\": 2}, \"items\": {\"type\": \"int\", \"arg.properties\": "
+      + "{\"iteration\": {\"start\": 0}}}}}]}";
+
   private Map<String, String> config;
   private DatagenTask task;
+  private final List<DatagenTask> startedTasks = new ArrayList<>();
   private List<SourceRecord> records;
   private Schema expectedValueConnectSchema;
   private Schema expectedKeyConnectSchema;
+  private Map<String, Object> storedOffset;
 
   @Before
   public void setUp() throws Exception {
@@ -63,7 +97,10 @@ public class DatagenTaskTest {
 
   @After
   public void tearDown() throws Exception {
-    task.stop();
+    // Tests that restart the task leave the earlier ones running, with their threads and MBeans
+    for (DatagenTask startedTask : startedTasks) {
+      startedTask.stop();
+    }
     task = null;
   }
 
@@ -128,6 +165,526 @@ public class DatagenTaskTest {
     }
   }
 
+  @Test
+  public void shouldReturnBatchesWithoutExceedingIterations() throws Exception {
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "7");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+
+    records.clear();
+    while (records.size() < NUM_MESSAGES) {
+      List<SourceRecord> newRecords = task.poll();
+      assertNotNull(newRecords);
+      assertEquals(Math.min(7, NUM_MESSAGES - records.size()), newRecords.size());
+      records.addAll(newRecords);
+    }
+    assertEquals(NUM_MESSAGES, records.size());
+    assertRecordsMatchSchemas();
+
+    try {
+      task.poll();
+      fail("Expected poll to fail");
+    } catch (ConnectException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldCloseBatchOnceMaxBytesIsReached() throws Exception {
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "50");
+    config.put(DatagenConnectorConfig.BATCH_MAX_BYTES_CONF, "1");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+
+    List<SourceRecord> newRecords = task.poll();
+    assertNotNull(newRecords);
+    assertEquals(1, newRecords.size());
+  }
+
+  @Test
+  public void shouldGenerateDisjointKeysWhenSharded() throws Exception {
+    config.put(DatagenConnectorConfig.TASK_SHARDING_CONF, "true");
+    config.put(DatagenTaskConfig.TASK_COUNT_CONF, "2");
+
+    Set<Object> keys = new HashSet<>();
+    for (int taskId = 0; taskId < 2; taskId++) {
+      config.put(DatagenTaskConfig.TASK_ID_CONF, Integer.toString(taskId));
+      createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+      generateRecords();
+      assertRecordsMatchSchemas();
+      for (SourceRecord record : records) {
+        assertTrue("Duplicate key " + record.key(), keys.add(record.key()));
+      }
+      task.stop();
+    }
+    assertEquals(2 * NUM_MESSAGES, keys.size());
+  }
+
+  @Test
+  public void shouldGenerateIdenticalRecordsWithSameSeed() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    createTaskWith(DatagenTask.Quickstart.STOCK_TRADES);
+    generateRecords();
+    List<SourceRecord> firstRun = new ArrayList<>(records);
+    task.stop();
+
+    createTaskWith(DatagenTask.Quickstart.STOCK_TRADES);
+    generateRecords();
+    assertEquals(firstRun.size(), records.size());
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(firstRun.get(i).key(), records.get(i).key());
+      assertEquals(firstRun.get(i).value(), records.get(i).value());
+    }
+  }
+
+  @Test
+  public void shouldResumeFromCommittedOffset() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecords();
+    List<SourceRecord> firstRun = new ArrayList<>(records);
+    assertEquals(
+        Collections.singletonMap(DatagenTask.POSITION_FIELD, 40L),
+        firstRun.get(39).sourceOffset()
+    );
+    task.stop();
+
+    // Restart as if the first 40 records had been committed
+    storedOffset = new HashMap<>(firstRun.get(39).sourceOffset());
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    records.clear();
+    try {
+      while (true) {
+        records.addAll(task.poll());
+      }
+    } catch (ConnectException e) {
+      // expected once the configured iterations are reached
+    }
+    assertEquals(NUM_MESSAGES - 40, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(firstRun.get(40 + i).sourcePartition(), records.get(i).sourcePartition());
+      assertEquals(firstRun.get(40 + i).sourceOffset(), records.get(i).sourceOffset());
+      assertEquals(firstRun.get(40 + i).key(), records.get(i).key());
+      assertEquals(firstRun.get(40 + i).value(), records.get(i).value());
+    }
+  }
+
+  @Test
+  public void shouldResumeOtherIterationsFromTheirStart() throws Exception {
+    config.put(DatagenTaskConfig.TASK_SCHEMA_CONF, ITERATIONS_SCHEMA);
+    config.put(DatagenTaskConfig.TASK_SCHEMA_KEYFIELD_CONF, "id");
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    createTask();
+    generateRecords();
+    List<SourceRecord> firstRun = new ArrayList<>(records);
+    task.stop();
+
+    storedOffset = new HashMap<>(firstRun.get(39).sourceOffset());
+    createTask();
+    records.clear();
+    try {
+      while (true) {
+        records.addAll(task.poll());
+      }
+    } catch (ConnectException e) {
+      // expected once the configured iterations are reached
+    }
+    assertEquals(NUM_MESSAGES - 40, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      Struct value = (Struct) records.get(i).value();
+      assertEquals(((Struct) firstRun.get(40 + i).value()).get("id"), value.get("id"));
+      // Rather than drifting from where they should be, these start over
+      assertEquals(((Struct) firstRun.get(i).value()).get("cycle"), value.get("cycle"));
+      assertEquals(((Struct) firstRun.get(i).value()).get("pair"), value.get("pair"));
+    }
+  }
+
+  @Test
+  public void shouldGenerateSameRecordsInBackgroundPipeline() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    generateRecordsInBatches();
+    List<SourceRecord> inline = new ArrayList<>(records);
+    task.stop();
+
+    config.put(DatagenConnectorConfig.PIPELINE_THREADS_CONF, "3");
+    config.put(DatagenConnectorConfig.PIPELINE_BUFFER_SIZE_CONF, "4");
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    generateRecordsInBatches();
+    assertRecordsMatchSchemas();
+    assertSameRecords(inline, records);
+
+    try {
+      task.poll();
+      fail("Expected poll to fail");
+    } catch (ConnectException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldGenerateSameRecordsInPipelineWithUnevenIterations() throws Exception {
+    config.put(DatagenTaskConfig.TASK_SCHEMA_CONF, ITERATIONS_SCHEMA);
+    config.put(DatagenTaskConfig.TASK_SCHEMA_KEYFIELD_CONF, "id");
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTask();
+    generateRecordsInBatches();
+    List<SourceRecord> inline = new ArrayList<>(records);
+    task.stop();
+
+    // The 7 values of the cycle and the array iteration cannot be split between threads
+    config.put(DatagenConnectorConfig.PIPELINE_THREADS_CONF, "2");
+    createTask();
+    generateRecordsInBatches();
+    assertSameRecords(inline, records);
+    task.stop();
+
+    config.remove(DatagenConnectorConfig.PIPELINE_THREADS_CONF);
+    config.put(DatagenConnectorConfig.GENERATOR_THREADS_CONF, "2");
+    createTask();
+    generateRecordsInBatches();
+    assertSameRecords(inline, records);
+  }
+
+  @Test
+  public void shouldGenerateSameRecordsWithParallelBatches() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecordsInBatches();
+    List<SourceRecord> inline = new ArrayList<>(records);
+    task.stop();
+
+    config.put(DatagenConnectorConfig.GENERATOR_THREADS_CONF, "4");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecordsInBatches();
+    assertRecordsMatchSchemas();
+    assertSameRecords(inline, records);
+    task.stop();
+
+    // Records generated beyond the byte limit are carried over to the next poll
+    config.put(DatagenConnectorConfig.BATCH_MAX_BYTES_CONF, "1");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecordsInBatches();
+    assertSameRecords(inline, records);
+  }
+
+  @Test
+  public void shouldGenerateQuickstartsWithNativeEngine() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_ENGINE_CONF,
+               DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE);
+    for (DatagenTask.Quickstart quickstart : DatagenTask.Quickstart.values()) {
+      createTaskWith(quickstart);
+      generateRecords();
+      assertRecordsMatchSchemas();
+      // Only the clickstream iterates over strings, which the native engine does not support
+      assertEquals(
+          quickstart.name(),
+          quickstart == DatagenTask.Quickstart.CLICKSTREAM
+          ? DatagenConnectorConfig.GENERATOR_ENGINE_AVRO
+          : DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE,
+          task.generatorEngine()
+      );
+      task.stop();
+    }
+  }
+
+  @Test
+  public void shouldGenerateSameRecordsWithNativeEngineInBackgroundPipeline() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_ENGINE_CONF,
+               DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE);
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecordsInBatches();
+    List<SourceRecord> inline = new ArrayList<>(records);
+    task.stop();
+
+    config.put(DatagenConnectorConfig.PIPELINE_THREADS_CONF, "3");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecordsInBatches();
+    assertRecordsMatchSchemas();
+    assertSameRecords(inline, records);
+  }
+
+  @Test
+  public void shouldEmitSerializedValues() throws Exception {
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+    generateRecords();
+    List<SourceRecord> expected = new ArrayList<>(records);
+    task.stop();
+
+    org.apache.avro.Schema avroSchema =
+        loadAvroSchema(DatagenTask.Quickstart.USERS.getSchemaFilename());
+    GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(avroSchema);
+    ObjectMapper mapper = new ObjectMapper();
+    config.put(DatagenConnectorConfig.VALUE_SCHEMA_ID_CONF, "7");
+    // Values are always serialized by the Avro engine, so they match the Connect values above
+    config.put(DatagenConnectorConfig.GENERATOR_ENGINE_CONF,
+               DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE);
+    for (String format : Arrays.asList(DatagenConnectorConfig.VALUE_FORMAT_AVRO_BINARY,
+                                       DatagenConnectorConfig.VALUE_FORMAT_CONFLUENT_AVRO,
+                                       DatagenConnectorConfig.VALUE_FORMAT_JSON)) {
+      config.put(DatagenConnectorConfig.VALUE_FORMAT_CONF, format);
+      createTaskWith(DatagenTask.Quickstart.USERS);
+      assertEquals(DatagenConnectorConfig.GENERATOR_ENGINE_AVRO, task.generatorEngine());
+      generateRecords();
+      assertEquals(expected.size(), records.size());
+      for (int i = 0; i < records.size(); i++) {
+        SourceRecord record = records.get(i);
+        Struct expectedValue = (Struct) expected.get(i).value();
+        assertEquals(expectedKeyConnectSchema, record.keySchema());
+        assertEquals(expected.get(i).key(), record.key());
+        assertEquals(Schema.BYTES_SCHEMA, record.valueSchema());
+        byte[] value = (byte[]) record.value();
+        if (DatagenConnectorConfig.VALUE_FORMAT_JSON.equals(format)) {
+          JsonNode json = mapper.readTree(new String(value, StandardCharsets.UTF_8));
+          assertEquals(expectedValue.schema().fields().size(), json.size());
+          for (Field field : expectedValue.schema().fields()) {
+            Object fieldValue = expectedValue.get(field);
+            if (fieldValue instanceof Long) {
+              assertEquals(fieldValue, json.get(field.name()).getLongValue());
+            } else {
+              assertEquals(fieldValue, json.get(field.name()).getTextValue());
+            }
+          }
+        } else {
+          // Confluent wire format values start with the magic byte and the schema ID
+          int offset = DatagenConnectorConfig.VALUE_FORMAT_CONFLUENT_AVRO.equals(format) ? 5 : 0;
+          GenericRecord decoded = reader.read(null, DecoderFactory.get().binaryDecoder(
+              value, offset, value.length - offset, null));
+          assertEquals(expectedValue, AVRO_DATA.toConnectData(avroSchema, decoded).value());
+        }
+      }
+      task.stop();
+    }
+  }
+
+  @Test
+  public void shouldWriteConfiguredSchemaIdInConfluentWireFormat() throws Exception {
+    config.put(DatagenConnectorConfig.VALUE_FORMAT_CONF,
+               DatagenConnectorConfig.VALUE_FORMAT_CONFLUENT_AVRO);
+    config.put(DatagenConnectorConfig.VALUE_SCHEMA_ID_CONF, "7");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecords();
+    for (SourceRecord record : records) {
+      ByteBuffer value = ByteBuffer.wrap((byte[]) record.value());
+      assertEquals(0, value.get());
+      assertEquals(7, value.getInt());
+    }
+  }
+
+  @Test
+  public void shouldReplayRecordPool() throws Exception {
+    config.put(DatagenConnectorConfig.POOL_SIZE_CONF, "7");
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    generateRecords();
+    assertRecordsMatchSchemas();
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(Collections.singletonMap(DatagenTask.POSITION_FIELD, i + 1L),
+                   records.get(i).sourceOffset());
+      assertSame(records.get(i % 7).key(), records.get(i).key());
+      assertSame(records.get(i % 7).value(), records.get(i).value());
+      assertNull(records.get(i).timestamp());
+    }
+  }
+
+  @Test
+  public void shouldRewriteKeysAndTimestampsOfPooledRecords() throws Exception {
+    config.put(DatagenConnectorConfig.POOL_SIZE_CONF, "7");
+    config.put(DatagenConnectorConfig.POOL_REWRITE_CONF,
+               DatagenConnectorConfig.POOL_REWRITE_KEY);
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    generateRecords();
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(Integer.toString(i), records.get(i).key());
+      assertSame(records.get(i % 7).value(), records.get(i).value());
+    }
+
+    config.put(DatagenConnectorConfig.POOL_REWRITE_CONF,
+               DatagenConnectorConfig.POOL_REWRITE_TIMESTAMP);
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    final long start = System.currentTimeMillis();
+    generateRecords();
+    for (SourceRecord record : records) {
+      assertTrue(record.timestamp() >= start);
+    }
+  }
+
+  @Test
+  public void shouldRegenerateOnlyVolatileFields() throws Exception {
+    config.put(DatagenConnectorConfig.DELTA_FIELDS_CONF, "quantity,price:0.5");
+    config.put(DatagenConnectorConfig.DELTA_TEMPLATES_CONF, "3");
+    for (String engine : new String[] {DatagenConnectorConfig.GENERATOR_ENGINE_AVRO,
+                                       DatagenConnectorConfig.GENERATOR_ENGINE_NATIVE}) {
+      config.put(DatagenConnectorConfig.GENERATOR_ENGINE_CONF, engine);
+      createTaskWith(DatagenTask.Quickstart.STOCK_TRADES);
+      generateRecords();
+      assertRecordsMatchSchemas();
+      Set<Object> quantities = new HashSet<>();
+      for (int i = 0; i < records.size(); i++) {
+        Struct value = (Struct) records.get(i).value();
+        Struct template = (Struct) records.get(i % 3).value();
+        for (String field : new String[] {"side", "symbol", "account", "userid"}) {
+          assertSame(template.get(field), value.get(field));
+        }
+        assertEquals(value.get("symbol"), records.get(i).key());
+        quantities.add(value.get("quantity"));
+      }
+      assertTrue(quantities.size() > 3);
+      task.stop();
+    }
+  }
+
+  @Test
+  public void shouldShareTemplatesBetweenThreadsAndResumes() throws Exception {
+    config.put(DatagenConnectorConfig.DELTA_FIELDS_CONF, "viewtime,pageid:0.5");
+    config.put(DatagenConnectorConfig.DELTA_TEMPLATES_CONF, "4");
+    config.put(DatagenConnectorConfig.GENERATOR_SEED_CONF, "1234");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    generateRecordsInBatches();
+    List<SourceRecord> inline = new ArrayList<>(records);
+    task.stop();
+
+    config.put(DatagenConnectorConfig.PIPELINE_THREADS_CONF, "3");
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    generateRecordsInBatches();
+    assertSameRecords(inline, records);
+    task.stop();
+
+    config.remove(DatagenConnectorConfig.PIPELINE_THREADS_CONF);
+    storedOffset = new HashMap<>(inline.get(39).sourceOffset());
+    createTaskWith(DatagenTask.Quickstart.PAGEVIEWS);
+    records.clear();
+    try {
+      while (true) {
+        records.addAll(task.poll());
+      }
+    } catch (ConnectException e) {
+      // expected once the configured iterations are reached
+    }
+    assertSameRecords(inline.subList(40, NUM_MESSAGES), records);
+  }
+
+  @Test
+  public void shouldRejectVolatileIterationsThatAreNotAlwaysRegenerated() throws Exception {
+    config.put(DatagenTaskConfig.TASK_SCHEMA_CONF, ITERATIONS_SCHEMA);
+    config.put(DatagenTaskConfig.TASK_SCHEMA_KEYFIELD_CONF, "id");
+    config.put(DatagenConnectorConfig.DELTA_FIELDS_CONF, "cycle:0.5");
+    int cachedSchemas = SchemaCache.size();
+    try {
+      createTask();
+      fail("Expected the task to fail to start");
+    } catch (ConnectException e) {
+      // expected
+    }
+    // The failed task does not keep its schema cached
+    assertEquals(cachedSchemas, SchemaCache.size());
+  }
+
+  @Test
+  public void shouldStartFromConnectorSchemaWithoutSchemaFile() throws Exception {
+    DatagenTask.Quickstart quickstart = DatagenTask.Quickstart.ORDERS;
+    config.put(DatagenTaskConfig.TASK_SCHEMA_CONF,
+               loadAvroSchema(quickstart.getSchemaFilename()).toString());
+    config.put(DatagenTaskConfig.TASK_SCHEMA_KEYFIELD_CONF, quickstart.getSchemaKeyField());
+    config.put(DatagenConnectorConfig.SCHEMA_FILENAME_CONF, "/does/not/exist.avro");
+    createTask();
+    loadKeyAndValueSchemas(quickstart.getSchemaFilename(), quickstart.getSchemaKeyField());
+    generateRecords();
+    assertRecordsMatchSchemas();
+  }
+
+  @Test
+  public void shouldExposeMetricsOverJmx() throws Exception {
+    config.put(DatagenTask.CONNECTOR_NAME_PROP, "jmx-test");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+    generateRecordsInBatches();
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = DatagenTaskMetrics.objectName("jmx-test", 0);
+    assertEquals((long) records.size(), server.getAttribute(name, "RecordsGenerated"));
+    // Connect values are only sampled when the task does not limit bytes, starting with the first
+    long sampledBytes = (Long) server.getAttribute(name, "BytesGenerated");
+    assertTrue(sampledBytes > 0);
+    assertEquals(0L, sampledBytes % DatagenTask.BYTES_SAMPLE_INTERVAL);
+    assertEquals(10L, server.getAttribute(name, "BatchSizeMax"));
+    task.stop();
+    assertFalse(server.isRegistered(name));
+
+    config.put(DatagenConnectorConfig.BATCH_MAX_BYTES_CONF, "1000000");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+    generateRecordsInBatches();
+    assertTrue((Long) server.getAttribute(name, "BytesGenerated") > 0);
+  }
+
+  @Test
+  public void shouldTrackRecordsUntilCommitted() throws Exception {
+    config.put(DatagenTask.CONNECTOR_NAME_PROP, "ack-test");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+    generateRecords();
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = DatagenTaskMetrics.objectName("ack-test", 0);
+    assertEquals((long) records.size(), server.getAttribute(name, "InFlightRecords"));
+    for (SourceRecord record : records) {
+      task.commitRecord(record);
+    }
+    assertEquals(0L, server.getAttribute(name, "InFlightRecords"));
+    assertEquals((long) records.size(), server.getAttribute(name, "AckedRecords"));
+    assertEquals(0L, server.getAttribute(name, "UntimedAcks"));
+    task.stop();
+  }
+
+  @Test
+  public void shouldPauseAtMaxInFlightInAdaptiveRateMode() throws Exception {
+    config.put(DatagenConnectorConfig.RATE_MODE_CONF, DatagenConnectorConfig.RATE_MODE_ADAPTIVE);
+    config.put(DatagenConnectorConfig.RATE_ADAPTIVE_MAX_IN_FLIGHT_CONF, "5");
+    config.put(DatagenConnectorConfig.BATCH_SIZE_CONF, "10");
+    createTaskWith(DatagenTask.Quickstart.USERS);
+
+    List<SourceRecord> batch = task.poll();
+    assertEquals(5, batch.size());
+    assertNull(task.poll());
+
+    for (SourceRecord record : batch) {
+      task.commitRecord(record);
+    }
+    batch = task.poll();
+    assertEquals(5, batch.size());
+    assertEquals(6L, batch.get(0).sourceOffset().get(DatagenTask.POSITION_FIELD));
+    task.stop();
+  }
+
+  @Test
+  public void shouldGenerateRecordsWithFlightRecorderEventsEnabled() throws Exception {
+    config.put(DatagenConnectorConfig.JFR_EVENTS_ENABLED_CONF, "true");
+    createTaskWith(DatagenTask.Quickstart.ORDERS);
+    generateRecords();
+    assertRecordsMatchSchemas();
+  }
+
+  private void assertSameRecords(List<SourceRecord> expected, List<SourceRecord> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertEquals(expected.get(i).sourceOffset(), actual.get(i).sourceOffset());
+      assertEquals(expected.get(i).key(), actual.get(i).key());
+      assertEquals(expected.get(i).value(), actual.get(i).value());
+    }
+  }
+
+  private void generateRecordsInBatches() throws Exception {
+    records.clear();
+    while (records.size() < NUM_MESSAGES) {
+      List<SourceRecord> newRecords = task.poll();
+      assertNotNull(newRecords);
+      records.addAll(newRecords);
+    }
+  }
+
   private void generateAndValidateRecordsFor(DatagenTask.Quickstart quickstart) throws Exception {
     createTaskWith(quickstart);
     generateRecords();
@@ -231,6 +788,30 @@ public class DatagenTaskTest {
     config.putIfAbsent(DatagenConnectorConfig.MAXINTERVAL_CONF, Integer.toString(MAX_INTERVAL_MS));
 
     task = new DatagenTask();
+    startedTasks.add(task);
+    task.initialize(new SourceTaskContext() {
+      @Override
+      public Map<String, String> configs() {
+        return config;
+      }
+
+      @Override
+      public OffsetStorageReader offsetStorageReader() {
+        return new OffsetStorageReader() {
+          @Override
+          public <T> Map<String, Object> offset(Map<String, T> partition) {
+            return storedOffset;
+          }
+
+          @Override
+          public <T> Map<Map<String, T>, Map<String, Object>> offsets(
+              Collection<Map<String, T>> partitions
+          ) {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    });
     task.start(config);
   }
 
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FlightRecorderEventsTest {
+
+  @Test
+  public void shouldDoNothingWhenDisabled() {
+    FlightRecorderEvents events = FlightRecorderEvents.create(false);
+    assertSame(FlightRecorderEvents.DISABLED, events);
+    Object event = events.begin();
+    assertNull(event);
+    events.commit(event, "orders", 10L, 100L, 1L, 1L, 1L);
+  }
+
+  @Test
+  public void shouldNotCreateEventsWhileNothingRecords() {
+    assumeTrue(hasFlightRecorder());
+    FlightRecorderEvents events = FlightRecorderEvents.create(true);
+    assertTrue(events.isEnabled());
+    assertNull(events.begin());
+  }
+
+  @Test
+  public void shouldRecordPollBatchEvents() throws Exception {
+    assumeTrue(hasFlightRecorder());
+    // jdk.jfr is not in the Java 8 class library, so the recording is driven reflectively too
+    Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+    Object recording = recordingClass.getConstructor().newInstance();
+    Path file = Files.createTempFile("datagen", ".jfr");
+    try {
+      recordingClass.getMethod("enable", String.class)
+          .invoke(recording, FlightRecorderEvents.EVENT_NAME);
+      recordingClass.getMethod("start").invoke(recording);
+      FlightRecorderEvents events = FlightRecorderEvents.create(true);
+      assertTrue(events.isEnabled());
+      events.commit(events.begin(), "ksql.orders", 10L, 100L, 3000L, 2000L, 1000L);
+      // Another task shares the event type rather than defining its own
+      FlightRecorderEvents otherTask = FlightRecorderEvents.create(true);
+      assertTrue(otherTask.isEnabled());
+      otherTask.commit(otherTask.begin(), "ksql.users", 5L, 50L, 3000L, 2000L, 1000L);
+      recordingClass.getMethod("stop").invoke(recording);
+      recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+
+      List<Object> batches = new ArrayList<>();
+      Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile")
+          .getMethod("readAllEvents", Path.class);
+      for (Object event : (List<?>) readAllEvents.invoke(null, file)) {
+        Object type = event.getClass().getMethod("getEventType").invoke(event);
+        if (FlightRecorderEvents.EVENT_NAME.equals(
+            type.getClass().getMethod("getName").invoke(type))) {
+          batches.add(event);
+        }
+      }
+      assertEquals(2, batches.size());
+      Object batch = batches.get(0);
+      Method getLong = batch.getClass().getMethod("getLong", String.class);
+      assertEquals("ksql.orders",
+                   batch.getClass().getMethod("getString", String.class).invoke(batch, "schema"));
+      assertEquals(10L, getLong.invoke(batch, "records"));
+      assertEquals(100L, getLong.invoke(batch, "bytes"));
+      assertEquals(2000L, getLong.invoke(batch, "convertNanos"));
+    } finally {
+      recordingClass.getMethod("close").invoke(recording);
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static boolean hasFlightRecorder() {
+    try {
+      Class.forName("jdk.jfr.EventFactory");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.confluent.avro.random.generator.Generator;
+import org.apache.avro.Schema;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class GenerationPlanTest {
+
+  @Test
+  public void shouldNotChangePlanForSingleTask() throws Exception {
+    GenerationPlan plan = planFor(DatagenTask.Quickstart.PAGEVIEWS);
+    assertSame(plan, plan.shard(0, 1, "viewtime"));
+  }
+
+  @Test
+  public void shouldStrideIterationFields() throws Exception {
+    GenerationPlan plan = planFor(DatagenTask.Quickstart.PAGEVIEWS).shard(2, 4, "viewtime");
+
+    Map<?, ?> iteration = iteration(plan.schema(), "viewtime");
+    assertEquals(21, ((Number) iteration.get(GenerationPlan.ITERATION_START_PROP)).intValue());
+    assertEquals(40, ((Number) iteration.get(GenerationPlan.ITERATION_STEP_PROP)).intValue());
+  }
+
+  @Test
+  public void shouldStrideIterationFieldsWithDefaultStep() throws Exception {
+    GenerationPlan plan = planFor(DatagenTask.Quickstart.ORDERS).shard(1, 3, "orderid");
+
+    Map<?, ?> iteration = iteration(plan.schema(), "orderid");
+    assertEquals(1, ((Number) iteration.get(GenerationPlan.ITERATION_START_PROP)).intValue());
+    assertEquals(3, ((Number) iteration.get(GenerationPlan.ITERATION_STEP_PROP)).intValue());
+  }
+
+  @Test
+  public void shouldSliceKeyFieldOptions() throws Exception {
+    GenerationPlan plan = planFor(DatagenTask.Quickstart.STOCK_TRADES).shard(1, 3, "symbol");
+
+    assertEquals(Arrays.asList("ZJZZT", "ZWZZT"), argProperties(plan.schema(), "symbol")
+        .get(GenerationPlan.OPTIONS_PROP));
+    // Options of other fields are left alone
+    assertEquals(2, ((List<?>) argProperties(plan.schema(), "side")
+        .get(GenerationPlan.OPTIONS_PROP)).size());
+  }
+
+  @Test
+  public void shouldSliceKeyFieldRange() throws Exception {
+    GenerationPlan plan = planFor(DatagenTask.Quickstart.STOCK_TRADES).shard(3, 4, "quantity");
+
+    Map<?, ?> range = (Map<?, ?>) argProperties(plan.schema(), "quantity")
+        .get(GenerationPlan.RANGE_PROP);
+    assertEquals(3751, ((Number) range.get(GenerationPlan.RANGE_MIN_PROP)).intValue());
+    assertEquals(5000, ((Number) range.get(GenerationPlan.RANGE_MAX_PROP)).intValue());
+  }
+
+  @Test
+  public void shouldRegenerateAnyRecordFromAdvancedPlan() throws Exception {
+    GenerationPlan plan = planFor(DatagenTask.Quickstart.PAGEVIEWS).shard(1, 2, "viewtime");
+    CounterRandom random = new CounterRandom(7L, 1);
+    Generator generator = new Generator(plan.schema(), random);
+    List<String> records = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      random.position(i);
+      records.add(generator.generate().toString());
+    }
+
+    for (int i : new int[]{0, 13, 19}) {
+      CounterRandom jumped = new CounterRandom(7L, 1);
+      jumped.position(i);
+      assertEquals(records.get(i), new Generator(plan.advance(i).schema(), jumped).generate()
+          .toString());
+    }
+  }
+
+  @Test
+  public void shouldOnlyAdvanceIterationsThatAdvanceOncePerRecord() throws Exception {
+    Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"r\", "
+        + "\"fields\": [" + iterationField("id", "{\"start\": 0}")
+        + ", " + iterationField("cycle", "{\"start\": 10, \"restart\": 20, \"step\": 3}")
+        + ", {\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": "
+        + "{\"type\": \"int\", \"arg.properties\": {\"iteration\": {\"start\": 0}}}}}"
+        + ", {\"name\": \"maybe\", \"type\": [\"null\", {\"type\": \"int\", "
+        + "\"arg.properties\": {\"iteration\": {\"start\": 0}}}]}]}");
+
+    Schema advanced = GenerationPlan.of(schema).advance(5).schema();
+    assertEquals(5, start(iteration(advanced, "id")));
+    // A wrapping iteration cannot start mid-period, and nested ones do not advance once per
+    // record, so they start over
+    assertEquals(10, start(iteration(advanced, "cycle")));
+    assertEquals(0, start((Map<?, ?>) ((Map<?, ?>) advanced.getField("tags").schema()
+        .getElementType().getObjectProp(GenerationPlan.ARG_PROPERTIES_PROP))
+        .get(GenerationPlan.ITERATION_PROP)));
+    assertEquals(0, start((Map<?, ?>) ((Map<?, ?>) advanced.getField("maybe").schema()
+        .getTypes().get(1).getObjectProp(GenerationPlan.ARG_PROPERTIES_PROP))
+        .get(GenerationPlan.ITERATION_PROP)));
+  }
+
+  @Test
+  public void shouldInterleaveRestartIterationsWithEvenPeriods() throws Exception {
+    Schema schema = new Schema.Parser().parse("{\"type\": \"long\", \"arg.properties\": "
+        + "{\"iteration\": {\"start\": 10, \"restart\": 22, \"step\": 2}}}");
+    GenerationPlan plan = GenerationPlan.of(schema);
+    assertEquals(Collections.emptyList(), plan.unevenIterations(3));
+
+    Generator single = new Generator(schema, new Random());
+    List<Object> expected = new ArrayList<>();
+    for (int i = 0; i < 24; i++) {
+      expected.add(single.generate());
+    }
+    for (int lane = 0; lane < 3; lane++) {
+      Generator generator = new Generator(plan.interleave(lane, 3).schema(), new Random());
+      for (int i = lane; i < expected.size(); i += 3) {
+        assertEquals(expected.get(i), generator.generate());
+      }
+    }
+  }
+
+  @Test
+  public void shouldReportIterationsThatCannotBeInterleaved() throws Exception {
+    Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"r\", "
+        + "\"fields\": [" + iterationField("id", "{\"start\": 0}")
+        + ", " + iterationField("cycle", "{\"start\": 0, \"restart\": 6}")
+        + ", {\"name\": \"tags\", \"type\": {\"type\": \"map\", \"values\": "
+        + "{\"type\": \"int\", \"arg.properties\": {\"iteration\": {\"start\": 0}}}}}]}");
+    GenerationPlan plan = GenerationPlan.of(schema);
+
+    assertEquals(Collections.emptyList(), plan.unevenIterations(1));
+    assertEquals(Collections.singletonList("tags"), plan.unevenIterations(3));
+    // The 6 values of the cycle do not split into 4 lanes
+    assertEquals(Arrays.asList("cycle", "tags"), plan.unevenIterations(4));
+  }
+
+  private static String iterationField(String name, String iteration) {
+    return "{\"name\": \"" + name + "\", \"type\": {\"type\": \"int\", \"arg.properties\": "
+           + "{\"iteration\": " + iteration + "}}}";
+  }
+
+  private static int start(Map<?, ?> iteration) {
+    return ((Number) iteration.get(GenerationPlan.ITERATION_START_PROP)).intValue();
+  }
+
+  private static GenerationPlan planFor(DatagenTask.Quickstart quickstart) throws IOException {
+    return GenerationPlan.of(new Schema.Parser().parse(
+        GenerationPlanTest.class.getClassLoader().getResourceAsStream(
+            quickstart.getSchemaFilename())
+    ));
+  }
+
+  private static Map<?, ?> argProperties(Schema schema, String fieldName) {
+    return (Map<?, ?>) schema.getField(fieldName).schema()
+        .getObjectProp(GenerationPlan.ARG_PROPERTIES_PROP);
+  }
+
+  private static Map<?, ?> iteration(Schema schema, String fieldName) {
+    return (Map<?, ?>) argProperties(schema, fieldName).get(GenerationPlan.ITERATION_PROP);
+  }
+}
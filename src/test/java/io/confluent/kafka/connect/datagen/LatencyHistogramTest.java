@@ -0,0 +1,116 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void shouldReportPercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    assertEquals(1000L, histogram.count());
+    assertEquals(1000000L, histogram.max());
+    assertWithinPrecision(500000L, histogram.percentile(50.0));
+    assertWithinPrecision(990000L, histogram.percentile(99.0));
+    assertEquals(1000000L, histogram.percentile(100.0));
+  }
+
+  @Test
+  public void shouldReportSmallValuesExactly() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 0; i < 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(49L, histogram.percentile(50.0));
+    assertEquals(0L, new LatencyHistogram().percentile(99.0));
+  }
+
+  @Test
+  public void shouldMapEveryValueIntoItsBucket() {
+    Random random = new Random(42L);
+    for (int i = 0; i < 100000; i++) {
+      long value = random.nextLong() >>> (1 + random.nextInt(63));
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+      assertTrue(index == 0 || LatencyHistogram.highestEquivalentValue(index - 1) < value);
+    }
+  }
+
+  @Test
+  public void shouldCorrectForCoordinatedOmission() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordCorrected(1000L, 100L);
+    // 1000, 900, ..., 100
+    assertEquals(10L, histogram.count());
+    assertEquals(1000L, histogram.max());
+    assertWithinPrecision(500L, histogram.percentile(50.0));
+
+    histogram.recordCorrected(50L, 100L);
+    histogram.recordCorrected(70L, 0L);
+    assertEquals(12L, histogram.count());
+  }
+
+  @Test
+  public void shouldCorrectLongStallsBucketByBucket() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordCorrected(1000000000L, 1000L);
+    assertEquals(1000000L, histogram.count());
+    assertWithinPrecision(500000000L, histogram.percentile(50.0));
+    assertWithinPrecision(990000000L, histogram.percentile(99.0));
+  }
+
+  @Test
+  public void shouldMapEveryBucketBackToItsLowestValue() {
+    for (int index = 1; index < 64 * 40; index++) {
+      long lowest = LatencyHistogram.lowestEquivalentValue(index);
+      assertEquals(index, LatencyHistogram.bucketIndex(lowest));
+      assertEquals(index - 1, LatencyHistogram.bucketIndex(lowest - 1));
+    }
+  }
+
+  @Test
+  public void shouldMoveRecordedValuesOnReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(5000L);
+    histogram.record(7000L);
+
+    LatencyHistogram interval = histogram.getAndReset();
+    assertEquals(2L, interval.count());
+    assertEquals(7000L, interval.max());
+    assertEquals(0L, histogram.count());
+    assertEquals(0L, histogram.max());
+
+    histogram.record(100L);
+    histogram.add(interval);
+    assertEquals(3L, histogram.count());
+    assertEquals(7000L, histogram.max());
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual >= expected);
+    assertTrue(actual - expected <= expected / 64);
+  }
+}
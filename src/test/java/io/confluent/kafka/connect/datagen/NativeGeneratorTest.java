@@ -0,0 +1,128 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.confluent.connect.avro.AvroData;
+import org.apache.avro.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class NativeGeneratorTest {
+
+  private static final int NUM_RECORDS = 200;
+
+  @Test
+  public void shouldGenerateValidStructsForQuickstarts() throws Exception {
+    for (DatagenTask.Quickstart quickstart : DatagenTask.Quickstart.values()) {
+      if (quickstart == DatagenTask.Quickstart.CLICKSTREAM) {
+        // Uses iterations over strings, which only the Avro engine supports
+        continue;
+      }
+      Schema schema = new Schema.Parser().parse(
+          NativeGeneratorTest.class.getClassLoader().getResourceAsStream(
+              quickstart.getSchemaFilename())
+      );
+      NativeGenerator generator = generatorFor(schema);
+      for (int i = 0; i < NUM_RECORDS; i++) {
+        Struct struct = (Struct) generator.generate();
+        struct.validate();
+        assertNotNull(struct.get(quickstart.getSchemaKeyField()));
+      }
+    }
+  }
+
+  @Test
+  public void shouldRespectRangesOptionsAndRegexes() throws Exception {
+    NativeGenerator generator = generatorFor(DatagenTask.Quickstart.STOCK_TRADES);
+    List<String> sides = Arrays.asList("BUY", "SELL");
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Struct struct = (Struct) generator.generate();
+      int quantity = struct.getInt32("quantity");
+      assertTrue(quantity >= 1 && quantity < 5000);
+      assertTrue(sides.contains(struct.getString("side")));
+      assertTrue(struct.getString("userid").matches("User_[1-9]{0,1}"));
+    }
+  }
+
+  @Test
+  public void shouldGenerateOptionsOfComplexTypes() throws Exception {
+    NativeGenerator generator = generatorFor(DatagenTask.Quickstart.USERS_);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Struct struct = (Struct) generator.generate();
+      assertEquals(2, struct.getArray("interests").size());
+      Map<Object, Object> contactInfo = struct.getMap("contactinfo");
+      assertEquals("CA", contactInfo.get("state"));
+    }
+  }
+
+  @Test
+  public void shouldIterateWithStepAndRestart() {
+    Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"test\", "
+        + "\"fields\": [{\"name\": \"value\", \"type\": {\"type\": \"int\", \"arg.properties\": "
+        + "{\"iteration\": {\"start\": 10, \"restart\": 16, \"step\": 2}}}}]}");
+    NativeGenerator generator = generatorFor(schema);
+    int[] expected = {10, 12, 14, 10, 12, 14, 10};
+    for (int value : expected) {
+      assertEquals(value, (int) ((Struct) generator.generate()).getInt32("value"));
+    }
+  }
+
+  @Test
+  public void shouldContinueShardedIterations() throws Exception {
+    Schema schema = GenerationPlan.of(new Schema.Parser().parse(
+        NativeGeneratorTest.class.getClassLoader().getResourceAsStream(
+            DatagenTask.Quickstart.PAGEVIEWS.getSchemaFilename())
+    )).shard(1, 4, "viewtime").advance(3).schema();
+    NativeGenerator generator = generatorFor(schema);
+    // Task 1 of 4 starts at 11 and steps by 40, so its fourth record is at 131
+    assertEquals(131L, (long) ((Struct) generator.generate()).getInt64("viewtime"));
+    assertEquals(171L, (long) ((Struct) generator.generate()).getInt64("viewtime"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectStringIterations() throws Exception {
+    generatorFor(DatagenTask.Quickstart.CLICKSTREAM);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectUnknownAnnotations() {
+    generatorFor(new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"test\", "
+        + "\"fields\": [{\"name\": \"value\", \"type\": {\"type\": \"string\", "
+        + "\"arg.properties\": {\"prefix\": \"a\"}}}]}"));
+  }
+
+  private static NativeGenerator generatorFor(DatagenTask.Quickstart quickstart)
+      throws Exception {
+    return generatorFor(new Schema.Parser().parse(
+        NativeGeneratorTest.class.getClassLoader().getResourceAsStream(
+            quickstart.getSchemaFilename())
+    ));
+  }
+
+  private static NativeGenerator generatorFor(Schema schema) {
+    return new NativeGenerator(schema, new AvroData(1).toConnectSchema(schema), new Random(42L));
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+  private long now;
+
+  @Before
+  public void setUp() {
+    now = TimeUnit.HOURS.toNanos(1);
+  }
+
+  @Test
+  public void shouldReleaseFirstBatchImmediately() {
+    RateLimiter limiter = new RateLimiter(1000, () -> now);
+    assertEquals(0L, limiter.reserve(100));
+  }
+
+  @Test
+  public void shouldDelayNextBatchUntilItIsDue() {
+    RateLimiter limiter = new RateLimiter(1000, () -> now);
+    limiter.reserve(100);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.reserve(100));
+
+    now += TimeUnit.MILLISECONDS.toNanos(150);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(50), limiter.reserve(100));
+  }
+
+  @Test
+  public void shouldApplyNewRateToLaterReservations() {
+    RateLimiter limiter = new RateLimiter(1000, () -> now);
+    limiter.reserve(100);
+    limiter.setRate(100);
+    // The first batch was reserved at the old rate, the next one at the new rate
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.reserve(100));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1100), limiter.reserve(100));
+  }
+
+  @Test
+  public void shouldNotDriftWithFractionalPermitCosts() {
+    RateLimiter limiter = new RateLimiter(3, () -> now);
+    for (int i = 0; i < 3000; i++) {
+      limiter.reserve(1);
+    }
+    // 3000 permits at 3/s take 1000 seconds, give or take a nanosecond of rounding
+    long delay = limiter.reserve(1);
+    assertTrue(delay <= TimeUnit.SECONDS.toNanos(1000));
+    assertTrue(delay >= TimeUnit.SECONDS.toNanos(1000) - 1);
+  }
+
+  @Test
+  public void shouldLimitBurstAfterFallingBehind() {
+    RateLimiter limiter = new RateLimiter(1000, () -> now);
+    limiter.reserve(1);
+
+    now += TimeUnit.SECONDS.toNanos(10);
+    // Only one second worth of permits can be claimed without waiting
+    assertEquals(0L, limiter.reserve(1000));
+    assertEquals(0L, limiter.reserve(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), limiter.reserve(1));
+  }
+
+  @Test
+  public void shouldRememberWhenTheLastBatchWasDue() {
+    long start = now;
+    RateLimiter limiter = new RateLimiter(1000, () -> now);
+    limiter.reserve(100);
+    assertEquals(start, limiter.lastDueNanos());
+
+    now += TimeUnit.MILLISECONDS.toNanos(300);
+    limiter.reserve(100);
+    // Due 100ms in, so handed out 200ms late
+    assertEquals(start + TimeUnit.MILLISECONDS.toNanos(100), limiter.lastDueNanos());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), (long) limiter.nanosPerPermit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectNonPositiveRate() {
+    new RateLimiter(0);
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SchemaCacheTest {
+
+  private static final String SCHEMA = "{\"type\": \"record\", \"name\": \"CacheTest\", "
+      + "\"fields\": [{\"name\": \"id\", \"type\": {\"type\": \"long\", "
+      + "\"arg.properties\": {\"iteration\": {\"start\": 0}}}}]}";
+
+  @Test
+  public void shouldShareEntriesForSameContent() {
+    int initialSize = SchemaCache.size();
+    SchemaCache.Entry first = SchemaCache.acquire(SCHEMA);
+    SchemaCache.Entry second = SchemaCache.acquire(SCHEMA);
+    SchemaCache.Entry other = SchemaCache.acquire(SCHEMA.replace("CacheTest", "OtherCacheTest"));
+    try {
+      assertSame(first, second);
+      assertNotSame(first, other);
+      assertEquals(initialSize + 2, SchemaCache.size());
+      assertEquals("CacheTest", first.avroSchema().getName());
+      assertEquals("CacheTest", first.connectSchema().name());
+      assertEquals(first.avroSchema(), first.plan().schema());
+    } finally {
+      SchemaCache.release(first);
+      SchemaCache.release(other);
+    }
+    assertEquals(initialSize + 1, SchemaCache.size());
+    SchemaCache.release(second);
+    assertEquals(initialSize, SchemaCache.size());
+  }
+
+  @Test
+  public void shouldParseAgainAfterLastRelease() {
+    SchemaCache.Entry first = SchemaCache.acquire(SCHEMA);
+    SchemaCache.release(first);
+    SchemaCache.Entry second = SchemaCache.acquire(SCHEMA);
+    SchemaCache.release(second);
+    assertNotSame(first, second);
+  }
+}
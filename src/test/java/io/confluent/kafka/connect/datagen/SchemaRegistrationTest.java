@@ -0,0 +1,122 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaRegistrationTest {
+
+  private HttpServer registry;
+  private String registryUrl;
+  private int responseStatus;
+  private String responseBody;
+  private final List<String> requestPaths = new ArrayList<>();
+  private final List<String> requestBodies = new ArrayList<>();
+  private final List<String> contentTypes = new ArrayList<>();
+  private Schema schema;
+
+  @Before
+  public void setUp() throws Exception {
+    responseStatus = 200;
+    responseBody = "{\"id\": 42}";
+    registry = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    registry.createContext("/", this::handle);
+    registry.start();
+    registryUrl = "http://localhost:" + registry.getAddress().getPort();
+    schema = new Schema.Parser().parse(
+        SchemaRegistrationTest.class.getClassLoader().getResourceAsStream(
+            DatagenTask.Quickstart.ORDERS.getSchemaFilename())
+    );
+  }
+
+  @After
+  public void tearDown() {
+    registry.stop(0);
+  }
+
+  @Test
+  public void shouldRegisterSchemaUnderSubject() throws Exception {
+    assertEquals(42, SchemaRegistration.register(registryUrl + "/", "orders-value", schema));
+
+    assertEquals(1, requestPaths.size());
+    assertEquals("/subjects/orders-value/versions", requestPaths.get(0));
+    assertEquals(SchemaRegistration.CONTENT_TYPE, contentTypes.get(0));
+    JsonNode request = new ObjectMapper().readTree(requestBodies.get(0));
+    // The generator annotations are left out, but the schema is the same
+    String registered = request.get("schema").asText();
+    assertFalse(registered.contains(GenerationPlan.ARG_PROPERTIES_PROP));
+    assertEquals(SchemaNormalization.parsingFingerprint64(schema),
+                 SchemaNormalization.parsingFingerprint64(new Schema.Parser().parse(registered)));
+  }
+
+  @Test(expected = ConnectException.class)
+  public void shouldFailWhenRegistrationIsRejected() {
+    responseStatus = 409;
+    responseBody = "{\"error_code\": 409, \"message\": \"incompatible\"}";
+    SchemaRegistration.register(registryUrl, "orders-value", schema);
+  }
+
+  @Test
+  public void shouldComputeStableLocalIds() {
+    int localId = SchemaRegistration.localId(schema);
+    assertTrue(localId >= 0);
+    assertEquals(localId, SchemaRegistration.localId(new Schema.Parser().parse(schema.toString())));
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestPaths.add(exchange.getRequestURI().getPath());
+    contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+    requestBodies.add(read(exchange.getRequestBody()));
+    byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(responseStatus, response.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(response);
+    }
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      bytes.write(buffer, 0, read);
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
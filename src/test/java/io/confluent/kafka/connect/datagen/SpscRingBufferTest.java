@@ -0,0 +1,85 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpscRingBufferTest {
+
+  @Test
+  public void shouldRoundCapacityUpToPowerOfTwo() {
+    assertEquals(1, new SpscRingBuffer<Integer>(1).capacity());
+    assertEquals(8, new SpscRingBuffer<Integer>(5).capacity());
+    assertEquals(1024, new SpscRingBuffer<Integer>(1024).capacity());
+  }
+
+  @Test
+  public void shouldRejectOffersWhenFull() {
+    SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(4));
+
+    assertEquals(Integer.valueOf(0), buffer.poll());
+    assertTrue(buffer.offer(4));
+  }
+
+  @Test
+  public void shouldPollInOrderAcrossWrapAround() {
+    SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+    int next = 0;
+    for (int i = 0; i < 100; i++) {
+      assertTrue(buffer.offer(i));
+      if (i % 3 == 2) {
+        while (next <= i) {
+          assertEquals(Integer.valueOf(next++), buffer.poll());
+        }
+        assertNull(buffer.poll());
+      }
+    }
+  }
+
+  @Test
+  public void shouldHandOverElementsBetweenThreads() throws Exception {
+    final int count = 100000;
+    final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(64);
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < count; i++) {
+        while (!buffer.offer(i)) {
+          Thread.yield();
+        }
+      }
+    });
+    producer.start();
+
+    for (int i = 0; i < count; i++) {
+      Integer element;
+      while ((element = buffer.poll()) == null) {
+        Thread.yield();
+      }
+      assertEquals(i, element.intValue());
+    }
+    producer.join();
+    assertNull(buffer.poll());
+  }
+}
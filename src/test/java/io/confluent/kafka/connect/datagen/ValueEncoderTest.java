@@ -0,0 +1,91 @@
+/**
+ * Copyright 2018 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.kafka.connect.datagen;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import io.confluent.avro.random.generator.Generator;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ValueEncoderTest {
+
+  private Schema schema;
+  private Generator generator;
+
+  @Before
+  public void setUp() throws Exception {
+    schema = new Schema.Parser().parse(
+        ValueEncoderTest.class.getClassLoader().getResourceAsStream(
+            DatagenTask.Quickstart.ORDERS.getSchemaFilename())
+    );
+    generator = new Generator(schema, new Random(42L));
+  }
+
+  @Test
+  public void shouldEncodeAvroBinary() throws Exception {
+    ValueEncoder encoder = new ValueEncoder(
+        DatagenConnectorConfig.VALUE_FORMAT_AVRO_BINARY, schema, -1);
+    for (int i = 0; i < 10; i++) {
+      GenericRecord record = (GenericRecord) generator.generate();
+      byte[] bytes = encoder.encode(record);
+      assertEquals(record.toString(), decode(bytes, 0).toString());
+    }
+  }
+
+  @Test
+  public void shouldEncodeConfluentWireFormat() throws Exception {
+    ValueEncoder encoder = new ValueEncoder(
+        DatagenConnectorConfig.VALUE_FORMAT_CONFLUENT_AVRO, schema, 258);
+    GenericRecord record = (GenericRecord) generator.generate();
+    ByteBuffer bytes = ByteBuffer.wrap(encoder.encode(record));
+    assertEquals(ValueEncoder.CONFLUENT_MAGIC_BYTE, bytes.get());
+    assertEquals(258, bytes.getInt());
+    assertEquals(record.toString(), decode(bytes.array(), 5).toString());
+  }
+
+  @Test
+  public void shouldEncodeJson() throws Exception {
+    ValueEncoder encoder = new ValueEncoder(DatagenConnectorConfig.VALUE_FORMAT_JSON, schema, -1);
+    for (int i = 0; i < 10; i++) {
+      GenericRecord record = (GenericRecord) generator.generate();
+      JsonNode json = new ObjectMapper().readTree(
+          new String(encoder.encode(record), StandardCharsets.UTF_8));
+      assertEquals(((Number) record.get("orderid")).intValue(), json.get("orderid").asInt());
+      assertEquals(record.get("itemid").toString(), json.get("itemid").asText());
+      assertEquals(
+          ((GenericRecord) record.get("address")).get("city").toString(),
+          json.get("address").get("city").asText()
+      );
+    }
+  }
+
+  private GenericRecord decode(byte[] bytes, int offset) throws Exception {
+    return new GenericDatumReader<GenericRecord>(schema).read(
+        null, DecoderFactory.get().binaryDecoder(bytes, offset, bytes.length - offset, null));
+  }
+}